@@ -0,0 +1,55 @@
+package com.mahmud.elasticsearchcrud.controller;
+
+import com.mahmud.elasticsearchcrud.model.User;
+import com.mahmud.elasticsearchcrud.repository.ReactiveUserRepository;
+import com.mahmud.elasticsearchcrud.service.ReactiveUserSearchService;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Read endpoints on the reactive Elasticsearch client. Spring MVC handles the returned publishers
+ * asynchronously, so no request thread waits for the cluster; streams are written one user per line
+ * and the next user is requested only after the previous one was written.
+ */
+@RestController
+@RequestMapping("/reactive/users")
+public class ReactiveUserController {
+
+    private final ReactiveUserRepository reactiveUserRepository;
+    private final ReactiveUserSearchService reactiveUserSearchService;
+
+    public ReactiveUserController(ReactiveUserRepository reactiveUserRepository,
+                                  ReactiveUserSearchService reactiveUserSearchService) {
+        this.reactiveUserRepository = reactiveUserRepository;
+        this.reactiveUserSearchService = reactiveUserSearchService;
+    }
+
+    // Read a user by ID
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<User>> getUser(@PathVariable Integer id) {
+        return reactiveUserRepository.findById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // Stream all users as NDJSON
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> getAllUsers(
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection) {
+        Sort sort = Sort.by(sortDirection.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
+        return reactiveUserRepository.findAll(sort);
+    }
+
+    // Stream all search matches as NDJSON, best first
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> searchUsers(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String email) {
+        return reactiveUserSearchService.search(q, email);
+    }
+}
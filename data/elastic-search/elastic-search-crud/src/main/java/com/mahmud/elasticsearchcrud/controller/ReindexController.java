@@ -0,0 +1,36 @@
+package com.mahmud.elasticsearchcrud.controller;
+
+import com.mahmud.elasticsearchcrud.model.ReindexStatus;
+import com.mahmud.elasticsearchcrud.service.UserReindexService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/admin/reindex")
+public class ReindexController {
+
+    private final UserReindexService userReindexService;
+
+    public ReindexController(UserReindexService userReindexService) {
+        this.userReindexService = userReindexService;
+    }
+
+    // Start copying the users into a new index with the current mapping; the alias moves when done
+    @PostMapping
+    public ResponseEntity<ReindexStatus> startReindex(
+            @RequestParam(defaultValue = "2") int slices,
+            @RequestParam(defaultValue = "0") int maxDocsPerSecond) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(userReindexService.start(slices, maxDocsPerSecond));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(userReindexService.status());
+        }
+    }
+
+    // Progress of the running or last reindex
+    @GetMapping
+    public ResponseEntity<ReindexStatus> getReindexStatus() {
+        return ResponseEntity.ok(userReindexService.status());
+    }
+}
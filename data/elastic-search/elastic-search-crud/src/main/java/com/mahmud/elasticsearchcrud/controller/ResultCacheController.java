@@ -0,0 +1,23 @@
+package com.mahmud.elasticsearchcrud.controller;
+
+import com.mahmud.elasticsearchcrud.model.ResultCacheStats;
+import com.mahmud.elasticsearchcrud.service.UserResultCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/admin/result-cache")
+public class ResultCacheController {
+
+    private final UserResultCache userResultCache;
+
+    public ResultCacheController(UserResultCache userResultCache) {
+        this.userResultCache = userResultCache;
+    }
+
+    // Hit rate, evictions and memory of the user result cache
+    @GetMapping
+    public ResponseEntity<ResultCacheStats> getStats() {
+        return ResponseEntity.ok(userResultCache.getStats());
+    }
+}
@@ -1,42 +1,77 @@
 package com.mahmud.elasticsearchcrud.controller;
 
+import com.mahmud.elasticsearchcrud.model.BulkIngestResult;
 import com.mahmud.elasticsearchcrud.model.User;
-import com.mahmud.elasticsearchcrud.repository.UserRepository;
+import com.mahmud.elasticsearchcrud.model.UserCursorPage;
+import com.mahmud.elasticsearchcrud.model.UserPatch;
+import com.mahmud.elasticsearchcrud.service.UserBulkIndexer;
+import com.mahmud.elasticsearchcrud.service.UserListingService;
+import com.mahmud.elasticsearchcrud.service.UserReadService;
+import com.mahmud.elasticsearchcrud.service.UserSearchService;
+import com.mahmud.elasticsearchcrud.service.UserWriteService;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.NoSuchIndexException;
+import org.springframework.data.elasticsearch.ResourceNotFoundException;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
 
-    private final UserRepository userRepository;
+    private static final int MAX_SUGGESTIONS = 20;
 
-    public UserController(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    private final UserReadService userReadService;
+    private final UserBulkIndexer userBulkIndexer;
+    private final UserListingService userListingService;
+    private final UserWriteService userWriteService;
+    private final UserSearchService userSearchService;
+
+    public UserController(UserReadService userReadService,
+                          UserBulkIndexer userBulkIndexer,
+                          UserListingService userListingService,
+                          UserWriteService userWriteService,
+                          UserSearchService userSearchService) {
+        this.userReadService = userReadService;
+        this.userBulkIndexer = userBulkIndexer;
+        this.userListingService = userListingService;
+        this.userWriteService = userWriteService;
+        this.userSearchService = userSearchService;
     }
 
     // Create a user
     @PostMapping
     public ResponseEntity<User> createUser(@Valid @RequestBody User user) {
-        User savedUser = userRepository.save(user);
+        User savedUser = userWriteService.save(user);
         return ResponseEntity.ok(savedUser);
     }
 
-    // Read a user by ID
+    // Create many users from a JSON array or NDJSON, batched into bulk requests
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkIngestResult> bulkCreateUsers(InputStream body) throws IOException {
+        return ResponseEntity.ok(userBulkIndexer.ingest(body));
+    }
+
+    // Read a user by ID; the ETag is the document version to send back in If-Match
     @GetMapping("/{id}")
     public ResponseEntity<Optional<User>> getUser(@PathVariable Integer id) {
-        Optional<User> user = userRepository.findById(id);
+        Optional<User> user = userReadService.findById(id);
         if (user.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(user);
+        return withETag(ResponseEntity.ok(), user.get().getSeqNoPrimaryTerm()).body(user);
     }
 
     // Read all users with pagination and sorting
@@ -46,30 +81,124 @@ public class UserController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection) {
-        Sort sort = Sort.by(sortDirection.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC, sortBy);
-        Pageable pageable = PageRequest.of(page, size, sort);
-        Page<User> users = userRepository.findAll(pageable);
+        Page<User> users = userReadService.findAll(page, size, sortBy, sortDirection);
         return ResponseEntity.ok(users);
     }
 
-    // Update a user
-    @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable Integer id, @Valid @RequestBody User user) {
-        if (!userRepository.existsById(id)) {
-            return ResponseEntity.notFound().build();
+    // Read all users page by page with an opaque cursor (point in time + search_after), at any depth
+    @GetMapping("/cursor")
+    public ResponseEntity<UserCursorPage> getUsersByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection) {
+        try {
+            return ResponseEntity.ok(userListingService.getPage(cursor, sortBy, sortDirection, size));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.GONE).build(); // The cursor's point in time expired
         }
-        user.setId(id); // Ensure the ID matches the path variable
-        User updatedUser = userRepository.save(user);
-        return ResponseEntity.ok(updatedUser);
     }
 
-    // Delete a user
+    // Export all users as NDJSON
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        return ResponseEntity.ok(userListingService::export);
+    }
+
+    // Search users by words in name and email, optionally restricted to one exact email
+    @GetMapping("/search")
+    public ResponseEntity<Page<User>> searchUsers(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String email,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(userSearchService.search(q, email, page, size));
+    }
+
+    // Autocomplete users by name or email prefix
+    @GetMapping("/suggest")
+    public ResponseEntity<List<User>> suggestUsers(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "5") int size) {
+        return ResponseEntity.ok(userSearchService.suggest(prefix, Math.min(size, MAX_SUGGESTIONS)));
+    }
+
+    // Update a user in one round trip; with If-Match, only if it is unchanged since it was read
+    @PutMapping("/{id}")
+    public ResponseEntity<User> updateUser(@PathVariable Integer id,
+                                           @Valid @RequestBody User user,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return userWriteService.replace(id, user, parseETag(ifMatch))
+                .map(updated -> withETag(ResponseEntity.ok(), updated.getSeqNoPrimaryTerm()).body(updated))
+                .orElseGet(() -> ResponseEntity.status(missingStatus(ifMatch)).build());
+    }
+
+    // Change some fields of a user; with If-Match, only if it is unchanged since it was read
+    @PatchMapping("/{id}")
+    public ResponseEntity<User> patchUser(@PathVariable Integer id,
+                                          @Valid @RequestBody UserPatch patch,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return userWriteService.patch(id, patch, parseETag(ifMatch))
+                .map(updated -> withETag(ResponseEntity.ok(), updated.getSeqNoPrimaryTerm()).body(updated))
+                .orElseGet(() -> ResponseEntity.status(missingStatus(ifMatch)).build());
+    }
+
+    // Delete a user in one round trip; with If-Match, only if it is unchanged since it was read
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable Integer id) {
-        if (!userRepository.existsById(id)) {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<Void> deleteUser(@PathVariable Integer id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (!userWriteService.delete(id, parseETag(ifMatch))) {
+            return ResponseEntity.status(missingStatus(ifMatch)).build();
         }
-        userRepository.deleteById(id);
         return ResponseEntity.noContent().build();
     }
+
+    // The write was rejected because the user changed since the If-Match version was read
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Void> handleConflict() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    // A malformed If-Match, cursor or other parameter
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> handleBadRequest() {
+        return ResponseEntity.badRequest().build();
+    }
+
+    // The users index is missing, so the user cannot be told apart from one that does not exist
+    @ExceptionHandler(NoSuchIndexException.class)
+    public ResponseEntity<Void> handleMissingIndex() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    // A missing user fails "If-Match: *" as a precondition rather than as a lookup
+    private static HttpStatus missingStatus(String ifMatch) {
+        return ifMatch != null && isAnyETag(ifMatch) ? HttpStatus.PRECONDITION_FAILED : HttpStatus.NOT_FOUND;
+    }
+
+    private static boolean isAnyETag(String ifMatch) {
+        return ifMatch.trim().equals("*");
+    }
+
+    // The ETag is "<seq_no>-<primary_term>" of the stored document
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, SeqNoPrimaryTerm version) {
+        return version != null ? builder.eTag(version.sequenceNumber() + "-" + version.primaryTerm()) : builder;
+    }
+
+    // "If-Match: *" only requires the user to exist, which updates and deletes check anyway
+    private static SeqNoPrimaryTerm parseETag(String ifMatch) {
+        if (ifMatch == null || isAnyETag(ifMatch)) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        int separator = tag.indexOf('-');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed If-Match: " + ifMatch);
+        }
+        return new SeqNoPrimaryTerm(Long.parseLong(tag.substring(0, separator)), Long.parseLong(tag.substring(separator + 1)));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.mahmud.elasticsearchcrud.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk ingest request.
+ * @param indexed Documents indexed successfully.
+ * @param failed Documents that were rejected, invalid or ran out of retries; see {@code errors}.
+ * @param retries Re-submissions of items Elasticsearch rejected as overloaded (429) or blocked by a reindex.
+ * @param elapsedMillis Time from the first document read to the last bulk response.
+ * @param errors One entry per failed document.
+ */
+public record BulkIngestResult(long indexed, long failed, long retries, long elapsedMillis, List<BulkItemError> errors) {
+}
@@ -0,0 +1,10 @@
+package com.mahmud.elasticsearchcrud.model;
+
+/**
+ * A document of a bulk request that could not be indexed.
+ * @param id The document ID, if the item got that far.
+ * @param status The HTTP status Elasticsearch reported for the item, or 400 if it could not be read or failed validation.
+ * @param reason Why the item failed.
+ */
+public record BulkItemError(Integer id, int status, String reason) {
+}
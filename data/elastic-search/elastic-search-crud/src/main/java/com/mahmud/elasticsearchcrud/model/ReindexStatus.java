@@ -0,0 +1,29 @@
+package com.mahmud.elasticsearchcrud.model;
+
+import java.time.Instant;
+
+/**
+ * Progress of a reindex of the users index.
+ * @param state IDLE, COPYING, CATCHING_UP, SWAPPING, DONE or FAILED.
+ * @param sourceIndex The index being copied.
+ * @param targetIndex The new versioned index.
+ * @param total Documents in the source when the copy started.
+ * @param copied Documents copied by the scrolls so far.
+ * @param caughtUp Documents re-copied or removed because they were written during the copy.
+ * @param slices Parallel scroll slices.
+ * @param maxDocsPerSecond Copy throttle, or 0 for unthrottled.
+ */
+public record ReindexStatus(
+        String state,
+        String sourceIndex,
+        String targetIndex,
+        long total,
+        long copied,
+        long caughtUp,
+        int slices,
+        int maxDocsPerSecond,
+        Instant startedAt,
+        Instant finishedAt,
+        String error
+) {
+}
@@ -0,0 +1,19 @@
+package com.mahmud.elasticsearchcrud.model;
+
+/**
+ * Counters of the user result cache since startup.
+ * @param weightBytes Estimated memory held by the cached results.
+ * @param maxWeightBytes The memory bound; entries are evicted beyond it.
+ * @param generation Bumped on every write; page results of older generations are never read again.
+ */
+public record ResultCacheStats(
+        long hits,
+        long misses,
+        double hitRate,
+        long evictions,
+        long entries,
+        long weightBytes,
+        long maxWeightBytes,
+        long generation
+) {
+}
@@ -1,5 +1,6 @@
 package com.mahmud.elasticsearchcrud.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -7,21 +8,54 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
+import org.springframework.data.elasticsearch.annotations.Setting;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
 
 
-@Document(indexName = "users")
+// Text fields get a "keyword" sub-field for sorting and exact filters, and an edge n-gram
+// "autocomplete" sub-field so prefix lookups are plain term matches.
+// "users" is an alias over a versioned index, created by UserIndexManager rather than by Spring Data.
+@Document(indexName = "users", createIndex = false)
+@Setting(settingPath = "/elasticsearch/users-settings.json")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class User {
     @Id
     @NotNull(message = "ID cannot be null")
+    @Field(type = FieldType.Integer)
     private Integer id;
 
     @NotNull(message = "Name cannot be null")
+    @MultiField(
+            mainField = @Field(type = FieldType.Text),
+            otherFields = {
+                    @InnerField(suffix = "keyword", type = FieldType.Keyword, ignoreAbove = 256),
+                    @InnerField(suffix = "autocomplete", type = FieldType.Text,
+                            analyzer = "name_autocomplete", searchAnalyzer = "name_autocomplete_search")
+            })
     private String name;
 
     @Email(message = "Email must be a valid email address")
     @NotNull(message = "Email cannot be null")
+    @MultiField(
+            mainField = @Field(type = FieldType.Text),
+            otherFields = {
+                    @InnerField(suffix = "keyword", type = FieldType.Keyword, ignoreAbove = 256),
+                    @InnerField(suffix = "autocomplete", type = FieldType.Text,
+                            analyzer = "email_autocomplete", searchAnalyzer = "email_autocomplete_search")
+            })
     private String email;
+
+    // Version of the stored document, filled in on reads and not stored; sent to clients as the ETag, not in the body.
+    @JsonIgnore
+    private SeqNoPrimaryTerm seqNoPrimaryTerm;
+
+    public User(Integer id, String name, String email) {
+        this(id, name, email, null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.mahmud.elasticsearchcrud.model;
+
+import java.util.List;
+
+/**
+ * One page of a cursor listing.
+ * @param users The users on this page.
+ * @param nextCursor Opaque cursor of the next page, or null after the last page.
+ */
+public record UserCursorPage(List<User> users, String nextCursor) {
+}
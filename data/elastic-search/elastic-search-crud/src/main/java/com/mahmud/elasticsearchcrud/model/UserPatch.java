@@ -0,0 +1,13 @@
+package com.mahmud.elasticsearchcrud.model;
+
+import jakarta.validation.constraints.Email;
+
+/**
+ * Fields of a partial user update; null fields are left unchanged.
+ */
+public record UserPatch(
+        String name,
+        @Email(message = "Email must be a valid email address")
+        String email
+) {
+}
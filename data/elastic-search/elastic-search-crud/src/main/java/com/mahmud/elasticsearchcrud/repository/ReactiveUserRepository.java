@@ -0,0 +1,7 @@
+package com.mahmud.elasticsearchcrud.repository;
+
+import com.mahmud.elasticsearchcrud.model.User;
+import org.springframework.data.elasticsearch.repository.ReactiveElasticsearchRepository;
+
+public interface ReactiveUserRepository extends ReactiveElasticsearchRepository<User, Integer> {
+}
@@ -0,0 +1,42 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import com.mahmud.elasticsearchcrud.model.User;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reactive counterpart of {@link UserSearchService}: returns every match as a stream.
+ * <p>
+ * Without a page, the reactive template reads the hits batch by batch and only fetches the next
+ * batch once the subscriber has asked for more, so a slow client slows the read down instead of
+ * buffering the results.
+ */
+@Service
+public class ReactiveUserSearchService {
+
+    private final ReactiveElasticsearchOperations operations;
+
+    public ReactiveUserSearchService(ReactiveElasticsearchOperations operations) {
+        this.operations = operations;
+    }
+
+    public Flux<User> search(String text, String email) {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> {
+                    if (text != null && !text.isBlank()) {
+                        b.must(m -> m.multiMatch(mm -> mm.query(text).fields("name^2", "email")));
+                    }
+                    if (email != null && !email.isBlank()) {
+                        b.filter(f -> f.term(t -> t.field("email.keyword").value(email)));
+                    }
+                    return b;
+                }))
+                .withSort(Sort.by("_score").descending().and(Sort.by("id")))
+                .build();
+        return operations.search(query, User.class).map(SearchHit::getContent);
+    }
+}
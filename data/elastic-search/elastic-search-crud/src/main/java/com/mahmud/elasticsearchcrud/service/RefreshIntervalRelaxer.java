@@ -0,0 +1,90 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Switches periodic refresh off on an index while large loads run, and back on when the last one ends.
+ * <p>
+ * Every {@link #relax()} must be paired with a {@link #restore()}. The setting found before the
+ * first relax is put back and the index is refreshed once, so the loaded documents become visible
+ * right away instead of after the next periodic refresh. If the index had no explicit setting, it is
+ * reset rather than set to the default value, which keeps Elasticsearch's search-idle shards working.
+ */
+class RefreshIntervalRelaxer {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshIntervalRelaxer.class);
+
+    private final ElasticsearchClient client;
+    private final RestClient restClient;
+    private final String index;
+
+    private int holders;
+    private String previous; // null if not set explicitly
+
+    RefreshIntervalRelaxer(ElasticsearchClient client, RestClient restClient, String index) {
+        this.client = client;
+        this.restClient = restClient;
+        this.index = index;
+    }
+
+    /**
+     * Counts as a holder only once the setting has been changed, so a failed call needs no
+     * {@link #restore()} and leaves the next caller to try again.
+     */
+    synchronized void relax() throws IOException {
+        if (holders > 0) {
+            holders++;
+            return;
+        }
+        IndexSettings current = client.indices().getSettings(g -> g.index(index)).result().values().stream()
+                .findFirst()
+                .map(state -> state.settings())
+                .orElse(null);
+        Time interval = current != null && current.index() != null ? current.index().refreshInterval() : null;
+        if (interval == null && current != null) {
+            interval = current.refreshInterval();
+        }
+        previous = interval != null && interval.isTime() ? interval.time() : null;
+        putRefreshInterval("-1");
+        holders = 1;
+        log.info("Disabled refresh on {} for a bulk load (was {})", index, previous != null ? previous : "unset");
+    }
+
+    synchronized void restore() {
+        if (--holders > 0) {
+            return;
+        }
+        try {
+            if (previous != null) {
+                putRefreshInterval(previous);
+            } else {
+                resetRefreshInterval();
+            }
+            client.indices().refresh(r -> r.index(index));
+            log.info("Restored refresh_interval {} on {}", previous != null ? previous : "default", index);
+        } catch (IOException e) {
+            log.error("Could not restore refresh_interval {} on {}", previous != null ? previous : "default", index, e);
+        }
+    }
+
+    private void putRefreshInterval(String interval) throws IOException {
+        client.indices().putSettings(p -> p
+                .index(index)
+                .settings(s -> s.refreshInterval(t -> t.time(interval))));
+    }
+
+    // A setting is reset by putting null, which the typed settings cannot send.
+    private void resetRefreshInterval() throws IOException {
+        Request request = new Request("PUT", "/" + index + "/_settings");
+        request.setJsonEntity("{\"index\":{\"refresh_interval\":null}}");
+        restClient.performRequest(request);
+    }
+}
@@ -0,0 +1,320 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mahmud.elasticsearchcrud.model.BulkIngestResult;
+import com.mahmud.elasticsearchcrud.model.BulkItemError;
+import com.mahmud.elasticsearchcrud.model.User;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.elasticsearch.client.RestClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Indexes users through one shared {@link BulkIngester}.
+ * <p>
+ * A bulk request is sent when {@code maxOperations} documents or {@code maxSize} bytes are buffered,
+ * or after {@code flushInterval}. At most {@code maxConcurrentRequests} requests are in flight:
+ * beyond that, {@code add} blocks, which slows down the reader of the upload. Items rejected with
+ * 429 or by the write block of a reindex on another node (or whole requests that failed) are
+ * re-submitted with exponential backoff up to {@code maxRetries} times. All other item failures are reported back to the caller.
+ * <p>
+ * Once a single import goes past {@code relaxRefreshAfter} documents, periodic refresh of the index
+ * is switched off until every large import has finished, see {@link RefreshIntervalRelaxer}.
+ */
+@Service
+public class UserBulkIndexer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserBulkIndexer.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final BulkIngester<BulkItem> ingester;
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> Thread.ofPlatform().name("bulk-retry").daemon().unstarted(runnable));
+    private final RefreshIntervalRelaxer refreshRelaxer;
+    private final UserWriteTracker writeTracker;
+    private final UserResultCache resultCache;
+    private final ObjectReader userReader;
+    private final Validator validator;
+    private final String index;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final long relaxRefreshAfter;
+    private final Duration completionTimeout;
+
+    public UserBulkIndexer(ElasticsearchClient client,
+                           RestClient restClient,
+                           ElasticsearchOperations operations,
+                           ObjectMapper objectMapper,
+                           Validator validator,
+                           UserWriteTracker writeTracker,
+                           UserResultCache resultCache,
+                           @Value("${app.users.bulk.max-operations:1000}") int maxOperations,
+                           @Value("${app.users.bulk.max-size:5MB}") DataSize maxSize,
+                           @Value("${app.users.bulk.flush-interval:1s}") Duration flushInterval,
+                           @Value("${app.users.bulk.max-concurrent-requests:2}") int maxConcurrentRequests,
+                           @Value("${app.users.bulk.max-retries:3}") int maxRetries,
+                           @Value("${app.users.bulk.retry-backoff:200ms}") Duration retryBackoff,
+                           @Value("${app.users.bulk.relax-refresh-after:10000}") long relaxRefreshAfter,
+                           @Value("${app.users.bulk.completion-timeout:5m}") Duration completionTimeout) {
+        this.index = operations.getIndexCoordinatesFor(User.class).getIndexName();
+        this.refreshRelaxer = new RefreshIntervalRelaxer(client, restClient, index);
+        this.userReader = objectMapper.readerFor(User.class);
+        this.validator = validator;
+        this.writeTracker = writeTracker;
+        this.resultCache = resultCache;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.relaxRefreshAfter = relaxRefreshAfter;
+        this.completionTimeout = completionTimeout;
+        this.ingester = BulkIngester.of(b -> b
+                .client(client)
+                .maxOperations(maxOperations)
+                .maxSize(maxSize.toBytes())
+                .maxConcurrentRequests(maxConcurrentRequests)
+                .flushInterval(flushInterval.toMillis(), TimeUnit.MILLISECONDS)
+                .listener(new Listener()));
+    }
+
+    /**
+     * Reads users from a JSON array or an NDJSON stream and indexes them.
+     * Returns when every document has been indexed or has failed for good, or after {@code completionTimeout}
+     * with a 504 error for the documents still pending.
+     * Null items and items that do not map to a user are reported as 400 errors and skipped; malformed
+     * JSON is reported the same way but ends the upload, keeping the documents read before it.
+     */
+    public BulkIngestResult ingest(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        BulkJob job = new BulkJob();
+        try {
+            // readValues() walks the elements of a root-level array, or whitespace-separated values (NDJSON).
+            try (MappingIterator<User> users = userReader.readValues(in)) {
+                while (users.hasNextValue()) {
+                    User user;
+                    try {
+                        user = users.nextValue();
+                    } catch (JsonMappingException e) {
+                        // Well-formed JSON that is not a user: the iterator skips past it, so carry on.
+                        job.failed(new BulkItemError(null, 400, describe(e)));
+                        continue;
+                    }
+                    if (user == null) {
+                        job.failed(new BulkItemError(null, 400, "User cannot be null"));
+                        continue;
+                    }
+                    Set<ConstraintViolation<User>> violations = validator.validate(user);
+                    if (!violations.isEmpty()) {
+                        job.failed(new BulkItemError(user.getId(), 400, describe(violations)));
+                        continue;
+                    }
+                    if (!job.relaxedRefresh && job.submitted.get() >= relaxRefreshAfter) {
+                        refreshRelaxer.relax();
+                        job.relaxedRefresh = true;
+                    }
+                    submit(new BulkItem(job, user, 0));
+                }
+            } catch (JsonParseException e) {
+                // Malformed JSON: nothing after it can be read reliably, but what came before still goes in.
+                job.failed(new BulkItemError(null, 400, describe(e)));
+            }
+            job.submissionsClosed();
+            flush();
+            awaitDone(job);
+        } finally {
+            if (job.relaxedRefresh) {
+                refreshRelaxer.restore();
+                resultCache.invalidatePages(); // Cached pages were read while the import was not searchable.
+            }
+        }
+        return new BulkIngestResult(job.indexed.get(), job.errors.size(), job.retries.get(),
+                System.currentTimeMillis() - start, List.copyOf(job.errors));
+    }
+
+    // Responses that never come (e.g. the ingester was closed mid-request) must not hold the caller forever.
+    private void awaitDone(BulkJob job) {
+        try {
+            job.done.get(completionTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            job.failed(new BulkItemError(null, 504, job.outstanding.get() + " documents still pending after " + completionTimeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.failed(new BulkItemError(null, 503, "Interrupted while waiting for bulk responses"));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // done is never completed exceptionally
+        }
+    }
+
+    /**
+     * Sends the buffered documents now instead of waiting for a size or time limit.
+     */
+    public void flush() {
+        ingester.flush();
+    }
+
+    private void submit(BulkItem item) {
+        item.job.submitted.incrementAndGet();
+        item.job.outstanding.incrementAndGet();
+        User user = item.user;
+        writeTracker.enter();
+        try {
+            ingester.add(op -> op.index(i -> i.index(index).id(String.valueOf(user.getId())).document(user)), item);
+        } catch (RuntimeException e) {
+            // Closed during shutdown, or the operation could not be built: no response will come for it.
+            log.warn("Could not add user {} to the bulk ingester", user.getId(), e);
+            written(item);
+            item.job.failed(new BulkItemError(user.getId(), 500, e.toString()));
+            item.job.itemDone();
+        }
+    }
+
+    // Called once per bulk response item, before it is retried or reported.
+    private void written(BulkItem item) {
+        writeTracker.exit(List.of(item.user.getId()));
+    }
+
+    private void retryOrFail(BulkItem item, int status, String reason) {
+        written(item);
+        if (item.attempt < maxRetries) {
+            item.job.retries.incrementAndGet();
+            long delay = retryBackoff.toMillis() << item.attempt;
+            // Not added from the listener thread: add() may block until an in-flight request completes.
+            try {
+                retryScheduler.schedule(() -> {
+                    try {
+                        submit(new BulkItem(item.job, item.user, item.attempt + 1));
+                    } finally {
+                        item.job.itemDone();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down: the retry will never run.
+                item.job.failed(new BulkItemError(item.user.getId(), status, reason));
+                item.job.itemDone();
+            }
+        } else {
+            item.job.failed(new BulkItemError(item.user.getId(), status, reason));
+            item.job.itemDone();
+        }
+    }
+
+    private static String describe(JsonProcessingException e) {
+        JsonLocation location = e.getLocation();
+        return location == null ? e.getOriginalMessage()
+                : e.getOriginalMessage() + " (line " + location.getLineNr() + ", column " + location.getColumnNr() + ")";
+    }
+
+    private static String describe(Set<ConstraintViolation<User>> violations) {
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    @Override
+    public void destroy() {
+        ingester.close();
+        retryScheduler.shutdown();
+    }
+
+    private class Listener implements BulkListener<BulkItem> {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request, List<BulkItem> contexts) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<BulkItem> contexts, BulkResponse response) {
+            List<BulkResponseItem> items = response.items();
+            for (int i = 0; i < contexts.size(); i++) {
+                BulkItem item = contexts.get(i);
+                BulkResponseItem result = items.get(i);
+                if (result.error() == null) {
+                    written(item);
+                    item.job.indexed.incrementAndGet();
+                    item.job.itemDone();
+                } else if (result.status() == TOO_MANY_REQUESTS
+                        || UserWriteTracker.WRITE_BLOCKED.equals(result.error().type())) {
+                    retryOrFail(item, result.status(), result.error().reason());
+                } else {
+                    written(item);
+                    item.job.failed(new BulkItemError(item.user.getId(), result.status(), result.error().reason()));
+                    item.job.itemDone();
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, List<BulkItem> contexts, Throwable failure) {
+            log.warn("Bulk request {} with {} items failed", executionId, contexts.size(), failure);
+            for (BulkItem item : contexts) {
+                retryOrFail(item, 503, failure.getMessage());
+            }
+        }
+    }
+
+    private record BulkItem(BulkJob job, User user, int attempt) {
+    }
+
+    /**
+     * Tracks the documents of one {@link #ingest} call. {@code done} completes once no more documents
+     * are read and none are waiting for a response or a retry.
+     */
+    private static class BulkJob {
+
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong outstanding = new AtomicLong(1); // Held by the reader until submissions are closed.
+        final AtomicLong indexed = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final Queue<BulkItemError> errors = new ConcurrentLinkedQueue<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        boolean relaxedRefresh;
+
+        void failed(BulkItemError error) {
+            errors.add(error);
+        }
+
+        void submissionsClosed() {
+            itemDone();
+        }
+
+        void itemDone() {
+            if (outstanding.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.mahmud.elasticsearchcrud.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the users data in versioned indices ({@code users_<timestamp>}) behind the {@code users} alias.
+ * <p>
+ * {@link User} is read and written through the alias, so the index behind it can be replaced
+ * without touching the application. On startup a first versioned index is created if there is
+ * neither an alias nor an index yet. It always has the same name, so nodes starting together agree
+ * on it instead of each putting an index of their own behind the alias. An existing concrete
+ * {@code users} index (created before the alias existed) is kept as is until the first reindex
+ * replaces it.
+ */
+@Component
+public class UserIndexManager implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIndexManager.class);
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String INITIAL_VERSION = "00000000-000000"; // Sorts before every reindex.
+
+    private final ElasticsearchClient client;
+    private final ElasticsearchOperations operations;
+    private final String alias;
+
+    public UserIndexManager(ElasticsearchClient client, ElasticsearchOperations operations) {
+        this.client = client;
+        this.operations = operations;
+        this.alias = operations.getIndexCoordinatesFor(User.class).getIndexName();
+    }
+
+    /**
+     * Runs before the web server starts, so no request reaches a missing index.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            if (isAlias() || client.indices().exists(e -> e.index(alias)).value()) {
+                return;
+            }
+            String index = alias + "_" + INITIAL_VERSION;
+            if (!createIndex(index)) {
+                log.info("Index {} was created by another node", index);
+            }
+            // Adding an alias that is already there is a no-op, so every node starting up may do it.
+            client.indices().updateAliases(u -> u.actions(a -> a.add(add -> add.index(index).alias(alias).isWriteIndex(true))));
+            log.info("Using index {} behind alias {}", index, alias);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not initialize the " + alias + " index", e);
+        }
+    }
+
+    public String alias() {
+        return alias;
+    }
+
+    /**
+     * @return The indices the alias points to, or the legacy concrete index of the same name.
+     */
+    public List<String> currentIndices() throws IOException {
+        if (isAlias()) {
+            return new ArrayList<>(client.indices().getAlias(g -> g.name(alias)).result().keySet());
+        }
+        return List.of(alias);
+    }
+
+    /**
+     * Creates an empty index with the settings and mapping declared on {@link User}.
+     * @return Its name.
+     */
+    public String createVersionedIndex() {
+        String name = alias + "_" + LocalDateTime.now().format(VERSION_FORMAT);
+        if (!createIndex(name)) {
+            throw new IllegalStateException("Index " + name + " already exists");
+        }
+        return name;
+    }
+
+    /**
+     * @return false if the index already existed.
+     */
+    private boolean createIndex(String name) {
+        IndexOperations entityIndex = operations.indexOps(User.class);
+        try {
+            operations.indexOps(IndexCoordinates.of(name)).create(entityIndex.createSettings(), entityIndex.createMapping());
+            return true;
+        } catch (UncategorizedElasticsearchException e) {
+            if (e.getResponseBody() != null && e.getResponseBody().contains("resource_already_exists_exception")) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Points the alias at {@code target} instead of {@code sources} in one atomic request.
+     * A legacy concrete index is deleted in the same request, as an alias cannot share its name.
+     */
+    public void swap(List<String> sources, String target) throws IOException {
+        boolean legacy = !isAlias();
+        client.indices().updateAliases(u -> {
+            u.actions(a -> a.add(add -> add.index(target).alias(alias).isWriteIndex(true)));
+            for (String source : sources) {
+                if (legacy) {
+                    u.actions(a -> a.removeIndex(r -> r.index(source)));
+                } else {
+                    u.actions(a -> a.remove(r -> r.index(source).alias(alias)));
+                }
+            }
+            return u;
+        });
+    }
+
+    private boolean isAlias() throws IOException {
+        return client.indices().existsAlias(e -> e.name(alias)).value();
+    }
+}
@@ -0,0 +1,187 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mahmud.elasticsearchcrud.model.User;
+import com.mahmud.elasticsearchcrud.model.UserCursorPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.ResourceNotFoundException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists users with a point in time (PIT) and {@code search_after} instead of from/size.
+ * <p>
+ * Every page costs the same however deep it is, and is not limited by {@code max_result_window}.
+ * The PIT keeps the listing consistent while documents change. The cursor handed to clients is the
+ * PIT ID and the sort values of the last hit, encoded as base64 JSON; clients must treat it as opaque.
+ * A PIT that is not used for {@code keepAlive} expires on its own; a cursor pointing at an expired PIT
+ * cannot be resumed and the listing has to start over.
+ */
+@Service
+public class UserListingService {
+
+    // Sortable fields and the field the sort is done on; text fields sort on their keyword sub-field.
+    private static final Map<String, String> SORT_FIELDS = Map.of(
+            "id", "id",
+            "name", "name.keyword",
+            "email", "email.keyword");
+
+    // Elasticsearch rejects larger pages unless index.max_result_window is raised.
+    private static final int MAX_PAGE_SIZE = 10_000;
+
+    private static final Logger log = LoggerFactory.getLogger(UserListingService.class);
+
+    private final ElasticsearchOperations operations;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter userWriter;
+    private final IndexCoordinates index;
+    private final Duration keepAlive;
+    private final int exportPageSize;
+
+    public UserListingService(ElasticsearchOperations operations,
+                              ObjectMapper objectMapper,
+                              @Value("${app.users.cursor.keep-alive:1m}") Duration keepAlive,
+                              @Value("${app.users.export.page-size:1000}") int exportPageSize) {
+        this.operations = operations;
+        this.objectMapper = objectMapper;
+        this.userWriter = objectMapper.writerFor(User.class);
+        this.index = operations.getIndexCoordinatesFor(User.class);
+        this.keepAlive = keepAlive;
+        this.exportPageSize = exportPageSize;
+    }
+
+    /**
+     * Returns the first page for {@code sortBy}/{@code sortDirection}, or the page after {@code cursor}.
+     * With a cursor, the sort it was created with is used and the sort parameters are ignored.
+     * A PIT opened for a first page is closed again if the page cannot be read.
+     * @throws IllegalArgumentException If the size, the sort or the cursor is not valid.
+     * @throws ResourceNotFoundException If the cursor's PIT expired or was closed.
+     */
+    public UserCursorPage getPage(String cursor, String sortBy, String sortDirection, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        CursorState request = cursor != null ? decode(cursor) : new CursorState(null, sortBy, sortDirection, null);
+        Sort sort = sort(request.sortBy(), request.direction());
+
+        CursorState state = cursor != null
+                ? request
+                : new CursorState(operations.openPointInTime(index, keepAlive), sortBy, sortDirection, null);
+        SearchHits<User> hits;
+        try {
+            hits = operations.search(pageQuery(state.pit(), sort, state.after(), size), User.class);
+        } catch (RuntimeException e) {
+            if (cursor == null) {
+                closeQuietly(state.pit());
+            }
+            if (cursor != null && e instanceof UncategorizedElasticsearchException uncategorized
+                    && Integer.valueOf(400).equals(uncategorized.getStatusCode())) {
+                throw new IllegalArgumentException("Invalid cursor", e); // A PIT ID Elasticsearch cannot parse.
+            }
+            throw e;
+        }
+        List<User> users = hits.getSearchHits().stream().map(SearchHit::getContent).toList();
+        if (users.size() < size) {
+            operations.closePointInTime(hits.getPointInTimeId());
+            return new UserCursorPage(users, null);
+        }
+        List<Object> lastSortValues = hits.getSearchHit(users.size() - 1).getSortValues();
+        return new UserCursorPage(users, encode(new CursorState(
+                hits.getPointInTimeId(), state.sortBy(), state.direction(), lastSortValues)));
+    }
+
+    private static Sort sort(String sortBy, String sortDirection) {
+        String sortField = sortBy != null ? SORT_FIELDS.get(sortBy) : null;
+        if (sortField == null) {
+            throw new IllegalArgumentException("Cannot sort by " + sortBy + ", use one of " + SORT_FIELDS.keySet());
+        }
+        Sort.Direction direction = Sort.Direction.fromOptionalString(sortDirection)
+                .orElseThrow(() -> new IllegalArgumentException("Sort direction must be asc or desc"));
+        Sort sort = Sort.by(direction, sortField);
+        if (!sortField.equals("id")) {
+            sort = sort.and(Sort.by(Sort.Direction.ASC, "id")); // Tiebreaker: equal sort keys must not be skipped or repeated.
+        }
+        return sort;
+    }
+
+    private void closeQuietly(String pit) {
+        try {
+            operations.closePointInTime(pit);
+        } catch (RuntimeException e) {
+            log.warn("Could not close point in time; it expires after {}", keepAlive, e);
+        }
+    }
+
+    /**
+     * Writes every user as one JSON line. Pages through a PIT in shard order, the cheapest order to read.
+     */
+    public void export(OutputStream out) throws IOException {
+        String pit = operations.openPointInTime(index, keepAlive);
+        try {
+            List<Object> after = null;
+            while (true) {
+                SearchHits<User> hits = operations.search(
+                        pageQuery(pit, Sort.by("_shard_doc"), after, exportPageSize), User.class);
+                for (SearchHit<User> hit : hits) {
+                    out.write(userWriter.writeValueAsBytes(hit.getContent()));
+                    out.write('\n');
+                }
+                pit = hits.getPointInTimeId();
+                if (hits.getSearchHits().size() < exportPageSize) {
+                    break;
+                }
+                after = hits.getSearchHit(hits.getSearchHits().size() - 1).getSortValues();
+            }
+            out.flush();
+        } finally {
+            operations.closePointInTime(pit);
+        }
+    }
+
+    private Query pageQuery(String pit, Sort sort, List<Object> after, int size) {
+        return NativeQuery.builder()
+                .withPointInTime(new Query.PointInTime(pit, keepAlive))
+                .withSort(sort)
+                .withSearchAfter(after)
+                .withPageable(PageRequest.of(0, size))
+                .withTrackTotalHits(false)
+                .build();
+    }
+
+    private String encode(CursorState state) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(state));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode cursor", e);
+        }
+    }
+
+    private CursorState decode(String cursor) {
+        try {
+            return objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), CursorState.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private record CursorState(String pit, String sortBy, String direction, List<Object> after) {
+    }
+}
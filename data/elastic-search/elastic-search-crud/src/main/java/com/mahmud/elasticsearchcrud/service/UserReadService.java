@@ -0,0 +1,37 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import com.mahmud.elasticsearchcrud.model.User;
+import com.mahmud.elasticsearchcrud.repository.UserRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Lookups and pages of users, served from {@link UserResultCache} when the same query was answered before.
+ */
+@Service
+public class UserReadService {
+
+    private final UserRepository userRepository;
+    private final UserResultCache resultCache;
+
+    public UserReadService(UserRepository userRepository, UserResultCache resultCache) {
+        this.userRepository = userRepository;
+        this.resultCache = resultCache;
+    }
+
+    public Optional<User> findById(Integer id) {
+        return resultCache.getUser(id, () -> userRepository.findById(id));
+    }
+
+    public Page<User> findAll(int page, int size, String sortBy, String sortDirection) {
+        // Normalized so that e.g. "ASC" and "asc" share an entry.
+        Sort.Direction direction = sortDirection.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+        String field = sortBy.trim();
+        return resultCache.getPage(page, size, field, direction.name(),
+                () -> userRepository.findAll(PageRequest.of(page, size, Sort.by(direction, field))));
+    }
+}
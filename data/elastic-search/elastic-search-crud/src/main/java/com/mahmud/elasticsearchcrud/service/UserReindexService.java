@@ -0,0 +1,483 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Level;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.ScrollResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.indices.IndicesStatsResponse;
+import co.elastic.clients.elasticsearch.indices.stats.ShardStats;
+import co.elastic.clients.json.JsonData;
+import com.mahmud.elasticsearchcrud.model.ReindexStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Copies the users data into a new versioned index and moves the alias to it without downtime.
+ * <p>
+ * Steps:
+ * <ol>
+ *     <li>Create the target with the current {@code User} mapping; refresh and replicas are off while it fills.</li>
+ *     <li>Note the global checkpoint of each source shard, then copy the source with parallel sliced
+ *     scrolls and bulk requests, throttled to {@code maxDocsPerSecond}.</li>
+ *     <li>Re-copy the documents written meanwhile: those with a {@code _seq_no} above the noted
+ *     checkpoint, from any node, and those this node wrote, as seen by {@link UserWriteTracker}.</li>
+ *     <li>Pause writes on this node and block writes to the source for all others, copy the last
+ *     changes and swap the alias atomically, then lift the block and resume writes.</li>
+ * </ol>
+ * A delete leaves no document to find by {@code _seq_no}. As every source document is in the target
+ * after a catch-up, a target with more documents than the source holds deleted ones; they are then
+ * found by comparing the IDs of both, which reads all IDs of the target.
+ * <p>
+ * Reads keep going to the source until the swap. Writers on other nodes retry while the source is
+ * blocked (see {@link UserWriteTracker}); if this process dies during the swap, the block stays on
+ * the source and has to be removed by hand. If any step fails the alias is left alone and the
+ * target is deleted. One reindex runs at a time.
+ */
+@Service
+public class UserReindexService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserReindexService.class);
+    private static final int CATCH_UP_PASSES = 3;
+    private static final int MGET_CHUNK = 1000;
+
+    private final ElasticsearchClient client;
+    private final UserIndexManager indexManager;
+    private final UserWriteTracker writeTracker;
+    private final UserBulkIndexer bulkIndexer;
+    private final int batchSize;
+    private final Duration scrollKeepAlive;
+    private final Duration maxWritePause;
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            runnable -> Thread.ofPlatform().name("reindex-", 0).daemon().unstarted(runnable));
+
+    private final AtomicReference<Job> current = new AtomicReference<>();
+
+    public UserReindexService(ElasticsearchClient client,
+                              UserIndexManager indexManager,
+                              UserWriteTracker writeTracker,
+                              UserBulkIndexer bulkIndexer,
+                              @Value("${app.users.reindex.batch-size:1000}") int batchSize,
+                              @Value("${app.users.reindex.scroll-keep-alive:5m}") Duration scrollKeepAlive,
+                              @Value("${app.users.reindex.max-write-pause:30s}") Duration maxWritePause) {
+        this.client = client;
+        this.indexManager = indexManager;
+        this.writeTracker = writeTracker;
+        this.bulkIndexer = bulkIndexer;
+        this.batchSize = batchSize;
+        this.scrollKeepAlive = scrollKeepAlive;
+        this.maxWritePause = maxWritePause;
+    }
+
+    /**
+     * Starts a reindex in the background.
+     * @param slices Parallel scroll slices, at least 1.
+     * @param maxDocsPerSecond Copy throttle over all slices; 0 for unthrottled.
+     * @return The status of the new job.
+     * @throws IllegalStateException If a reindex is already running.
+     */
+    public ReindexStatus start(int slices, int maxDocsPerSecond) {
+        Job job = new Job(Math.max(1, slices), Math.max(0, maxDocsPerSecond));
+        Job previous = current.get();
+        if (previous != null && !previous.finished() || !current.compareAndSet(previous, job)) {
+            throw new IllegalStateException("A reindex is already running");
+        }
+        executor.execute(() -> run(job));
+        return job.status();
+    }
+
+    public ReindexStatus status() {
+        Job job = current.get();
+        return job != null ? job.status() : new ReindexStatus("IDLE", null, null, 0, 0, 0, 0, 0, null, null, null);
+    }
+
+    private void run(Job job) {
+        try {
+            List<String> sources = indexManager.currentIndices();
+            job.source = String.join(",", sources);
+            job.target = indexManager.createVersionedIndex();
+            String replicas = client.indices().getSettings(g -> g.index(job.source).name("index.number_of_replicas"))
+                    .result().values().stream()
+                    .map(state -> state.settings() != null && state.settings().index() != null
+                            ? state.settings().index().numberOfReplicas() : null)
+                    .filter(value -> value != null)
+                    .findFirst()
+                    .orElse("1");
+            putTargetSettings(job.target, "-1", "0");
+
+            writeTracker.startTracking();
+            // Every operation up to a shard's global checkpoint is on all its copies, so after the
+            // refresh the scrolls see it; the catch-up covers everything above.
+            Map<String, Long> checkpoints = checkpoints(sources);
+            client.indices().refresh(r -> r.index(job.source));
+            job.total = client.count(c -> c.index(job.source)).count();
+            job.state = "COPYING";
+            copy(job);
+            putTargetSettings(job.target, "1s", replicas);
+            client.indices().refresh(r -> r.index(job.target));
+
+            job.state = "CATCHING_UP";
+            for (int pass = 0; pass < CATCH_UP_PASSES; pass++) {
+                if (catchUpPass(job, sources, checkpoints) == 0) {
+                    break;
+                }
+            }
+
+            job.state = "SWAPPING";
+            boolean legacy = sources.equals(List.of(indexManager.alias()));
+            boolean blocked = false;
+            boolean swapped = false;
+            try {
+                writeTracker.pause(maxWritePause, bulkIndexer::flush);
+                blockWrites(sources, true);
+                blocked = true;
+                catchUpPass(job, sources, checkpoints);
+                indexManager.swap(sources, job.target);
+                swapped = true;
+            } finally {
+                // A legacy concrete index is deleted by the swap, so there is no block left to lift.
+                if (blocked && !(swapped && legacy)) {
+                    liftWriteBlock(sources);
+                }
+                writeTracker.stopTracking();
+                writeTracker.resume();
+            }
+            job.state = "DONE";
+            log.info("Reindexed {} into {}: {} copied, {} caught up", job.source, job.target, job.copied.get(), job.caughtUp.get());
+        } catch (Exception e) {
+            writeTracker.stopTracking();
+            job.state = "FAILED";
+            job.error = e instanceof CompletionException && e.getCause() != null ? e.getCause().toString() : e.toString();
+            log.error("Reindex of {} failed", job.source, e);
+            deleteTarget(job.target);
+        } finally {
+            job.finishedAt = Instant.now();
+        }
+    }
+
+    private void copy(Job job) {
+        List<CompletableFuture<Void>> slices = new ArrayList<>(job.slices);
+        for (int slice = 0; slice < job.slices; slice++) {
+            int sliceId = slice;
+            slices.add(CompletableFuture.runAsync(() -> copySlice(job, sliceId), executor));
+        }
+        CompletableFuture.allOf(slices.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void copySlice(Job job, int sliceId) {
+        String scrollId = null;
+        try {
+            SearchResponse<JsonData> first = client.search(s -> {
+                s.index(job.source)
+                        .size(batchSize)
+                        .scroll(t -> t.time(scrollKeepAlive.toSeconds() + "s"))
+                        .sort(o -> o.doc(d -> d.order(SortOrder.Asc))); // _doc order is the cheapest to scroll.
+                if (job.slices > 1) {
+                    s.slice(sl -> sl.id(String.valueOf(sliceId)).max(job.slices));
+                }
+                return s;
+            }, JsonData.class);
+            scrollId = first.scrollId();
+            List<Hit<JsonData>> hits = first.hits().hits();
+            long sliceStart = System.nanoTime();
+            long sliceCopied = 0;
+            while (!hits.isEmpty()) {
+                index(job.target, hits);
+                sliceCopied += hits.size();
+                job.copied.addAndGet(hits.size());
+                throttle(job, sliceStart, sliceCopied);
+                String id = scrollId;
+                ScrollResponse<JsonData> next = client.scroll(s -> s
+                        .scrollId(id)
+                        .scroll(t -> t.time(scrollKeepAlive.toSeconds() + "s")), JsonData.class);
+                scrollId = next.scrollId();
+                hits = next.hits().hits();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (scrollId != null) {
+                String id = scrollId;
+                try {
+                    client.clearScroll(c -> c.scrollId(id));
+                } catch (IOException e) {
+                    log.debug("Could not clear scroll of slice {}", sliceId, e);
+                }
+            }
+        }
+    }
+
+    // Each slice gets an equal share of the rate and sleeps whenever it is ahead of it.
+    private void throttle(Job job, long sliceStartNanos, long sliceCopied) {
+        if (job.maxDocsPerSecond == 0) {
+            return;
+        }
+        double sliceRate = (double) job.maxDocsPerSecond / job.slices;
+        long dueNanos = (long) (sliceCopied / sliceRate * 1_000_000_000L);
+        long aheadNanos = dueNanos - (System.nanoTime() - sliceStartNanos);
+        if (aheadNanos > 0) {
+            try {
+                Thread.sleep(Duration.ofNanos(aheadNanos));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reindex interrupted", e);
+            }
+        }
+    }
+
+    private void index(String target, List<Hit<JsonData>> hits) throws IOException {
+        List<BulkOperation> operations = new ArrayList<>(hits.size());
+        for (Hit<JsonData> hit : hits) {
+            operations.add(BulkOperation.of(b -> b.index(i -> i.index(target).id(hit.id()).document(hit.source()))));
+        }
+        checkBulk(client.bulk(b -> b.operations(operations)));
+    }
+
+    /**
+     * @return The global checkpoint of each primary shard, by {@code index/shard}.
+     */
+    private Map<String, Long> checkpoints(List<String> indices) throws IOException {
+        Map<String, Long> checkpoints = new HashMap<>();
+        IndicesStatsResponse stats = client.indices().stats(s -> s.index(indices).level(Level.Shards));
+        stats.indices().forEach((index, indexStats) -> indexStats.shards().forEach((shard, copies) -> {
+            for (ShardStats copy : copies) {
+                if (copy.routing() != null && copy.routing().primary() && copy.seqNo() != null) {
+                    checkpoints.put(index + "/" + shard, copy.seqNo().globalCheckpoint());
+                }
+            }
+        }));
+        return checkpoints;
+    }
+
+    /**
+     * Copies the documents written since the previous pass, by any node, and removes the deleted
+     * ones. Moves {@code checkpoints} forward.
+     * @return The number of documents copied or removed.
+     */
+    private int catchUpPass(Job job, List<String> sources, Map<String, Long> checkpoints) throws IOException {
+        // Read before the refresh, like the first checkpoints, so the next pass starts where this one is sure to end.
+        Map<String, Long> next = checkpoints(sources);
+        client.indices().refresh(r -> r.index(job.source));
+        Set<String> ids = new LinkedHashSet<>();
+        writeTracker.drainDirty().forEach(id -> ids.add(String.valueOf(id)));
+        for (Map.Entry<String, Long> shard : checkpoints.entrySet()) {
+            String key = shard.getKey();
+            String index = key.substring(0, key.lastIndexOf('/'));
+            String shardId = key.substring(key.lastIndexOf('/') + 1);
+            scrollIds(s -> s
+                    .index(index)
+                    .preference("_shards:" + shardId)
+                    .query(q -> q.range(r -> r.number(n -> n.field("_seq_no").gt((double) shard.getValue())))), ids::addAll);
+        }
+        int changed = catchUp(job, List.copyOf(ids));
+        checkpoints.putAll(next);
+        return changed + removeDeleted(job);
+    }
+
+    /**
+     * Deletes the target documents that are no longer in the source. Only runs when the target
+     * holds more documents, which after a catch-up means some were deleted on another node.
+     * @return The number of documents removed.
+     */
+    private int removeDeleted(Job job) throws IOException {
+        client.indices().refresh(r -> r.index(job.target));
+        long sourceCount = client.count(c -> c.index(job.source)).count();
+        long targetCount = client.count(c -> c.index(job.target)).count();
+        if (targetCount <= sourceCount) {
+            return 0;
+        }
+        List<String> deleted = new ArrayList<>();
+        scrollIds(s -> s.index(job.target).query(q -> q.matchAll(m -> m)), ids -> {
+            MgetResponse<JsonData> current = client.mget(m -> m.index(job.source).ids(ids).source(sc -> sc.fetch(false)), JsonData.class);
+            for (MultiGetResponseItem<JsonData> item : current.docs()) {
+                if (item.isFailure()) {
+                    throw new IllegalStateException("Could not read " + item.failure().id() + ": " + item.failure().error().reason());
+                }
+                if (!item.result().found()) {
+                    deleted.add(item.result().id());
+                }
+            }
+        });
+        for (int from = 0; from < deleted.size(); from += MGET_CHUNK) {
+            List<BulkOperation> operations = deleted.subList(from, Math.min(deleted.size(), from + MGET_CHUNK)).stream()
+                    .map(id -> BulkOperation.of(b -> b.delete(d -> d.index(job.target).id(id))))
+                    .toList();
+            checkBulk(client.bulk(b -> b.operations(operations)));
+        }
+        job.caughtUp.addAndGet(deleted.size());
+        return deleted.size();
+    }
+
+    // Scrolls the matching documents without their source and passes on their IDs a page at a time.
+    private void scrollIds(Function<SearchRequest.Builder, SearchRequest.Builder> request, IdPageConsumer page) throws IOException {
+        String scrollId = null;
+        try {
+            SearchResponse<JsonData> response = client.search(s -> request.apply(s)
+                    .size(batchSize)
+                    .source(src -> src.fetch(false))
+                    .scroll(t -> t.time(scrollKeepAlive.toSeconds() + "s"))
+                    .sort(o -> o.doc(d -> d.order(SortOrder.Asc))), JsonData.class);
+            scrollId = response.scrollId();
+            List<Hit<JsonData>> hits = response.hits().hits();
+            while (!hits.isEmpty()) {
+                page.accept(hits.stream().map(Hit::id).toList());
+                String id = scrollId;
+                ScrollResponse<JsonData> next = client.scroll(s -> s
+                        .scrollId(id)
+                        .scroll(t -> t.time(scrollKeepAlive.toSeconds() + "s")), JsonData.class);
+                scrollId = next.scrollId();
+                hits = next.hits().hits();
+            }
+        } finally {
+            if (scrollId != null) {
+                String id = scrollId;
+                try {
+                    client.clearScroll(c -> c.scrollId(id));
+                } catch (IOException e) {
+                    log.debug("Could not clear ID scroll", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the current state of the given documents from the source: stored ones are indexed,
+     * deleted ones are deleted.
+     * @return The number of documents copied.
+     */
+    private int catchUp(Job job, List<String> ids) throws IOException {
+        for (int from = 0; from < ids.size(); from += MGET_CHUNK) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MGET_CHUNK));
+            MgetResponse<JsonData> current = client.mget(m -> m.index(job.source).ids(chunk), JsonData.class);
+            List<BulkOperation> operations = new ArrayList<>(chunk.size());
+            for (MultiGetResponseItem<JsonData> item : current.docs()) {
+                if (item.isFailure()) {
+                    throw new IllegalStateException("Could not read " + item.failure().id() + ": " + item.failure().error().reason());
+                }
+                var doc = item.result();
+                if (doc.found()) {
+                    operations.add(BulkOperation.of(b -> b.index(i -> i.index(job.target).id(doc.id()).document(doc.source()))));
+                } else {
+                    operations.add(BulkOperation.of(b -> b.delete(d -> d.index(job.target).id(doc.id()))));
+                }
+            }
+            checkBulk(client.bulk(b -> b.operations(operations)));
+        }
+        job.caughtUp.addAndGet(ids.size());
+        return ids.size();
+    }
+
+    private static void checkBulk(BulkResponse response) {
+        if (!response.errors()) {
+            return;
+        }
+        for (BulkResponseItem item : response.items()) {
+            // A catch-up delete of a document that never reached the target is fine.
+            if (item.error() != null && item.status() != 404) {
+                throw new IllegalStateException("Bulk write of " + item.id() + " failed: " + item.error().reason());
+            }
+        }
+    }
+
+    private void putTargetSettings(String target, String refreshInterval, String replicas) throws IOException {
+        client.indices().putSettings(p -> p
+                .index(target)
+                .settings(s -> s
+                        .refreshInterval(t -> t.time(refreshInterval))
+                        .numberOfReplicas(replicas)));
+    }
+
+    // Writers on other nodes get cluster_block_exception and retry until the block is lifted.
+    private void blockWrites(List<String> sources, boolean blocked) throws IOException {
+        client.indices().putSettings(p -> p
+                .index(sources)
+                .settings(s -> s.blocks(b -> b.write(blocked))));
+    }
+
+    private void liftWriteBlock(List<String> sources) {
+        try {
+            blockWrites(sources, false);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not lift the write block on {}; remove index.blocks.write by hand", sources, e);
+        }
+    }
+
+    private void deleteTarget(String target) {
+        if (target == null) {
+            return;
+        }
+        try {
+            client.indices().delete(d -> d.index(target));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not delete partial index {}", target, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface IdPageConsumer {
+        void accept(List<String> ids) throws IOException;
+    }
+
+    private static class Job {
+
+        final int slices;
+        final int maxDocsPerSecond;
+        final Instant startedAt = Instant.now();
+        final AtomicLong copied = new AtomicLong();
+        final AtomicLong caughtUp = new AtomicLong();
+        volatile String state = "STARTING";
+        volatile String source;
+        volatile String target;
+        volatile long total;
+        volatile Instant finishedAt;
+        volatile String error;
+
+        Job(int slices, int maxDocsPerSecond) {
+            this.slices = slices;
+            this.maxDocsPerSecond = maxDocsPerSecond;
+        }
+
+        boolean finished() {
+            return finishedAt != null;
+        }
+
+        ReindexStatus status() {
+            return new ReindexStatus(state, source, target, total, copied.get(), caughtUp.get(),
+                    slices, maxDocsPerSecond, startedAt, finishedAt, error);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mahmud.elasticsearchcrud.model.ResultCacheStats;
+import com.mahmud.elasticsearchcrud.model.User;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of user lookups and user pages, bounded by an estimate of their memory.
+ * <p>
+ * A lookup is cached under its ID, including "not found", and is evicted when that user is written.
+ * A page can contain any user, so page keys carry a generation number that every write increments.
+ * Pages cached under an older generation are never read again and are evicted as the cache fills or
+ * their TTL runs out. The TTL also bounds staleness after writes made by other processes.
+ * <p>
+ * Lookups are real-time gets, but pages are searches and only see a write after the next index
+ * refresh. A page loaded in between would be cached under the new generation without the write, so
+ * the generation is incremented once more {@code refreshDelay} after the last write, and again by
+ * {@link #invalidatePages()} when a bulk load that switched refresh off has refreshed the index.
+ */
+@Component
+public class UserResultCache implements DisposableBean {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int USER_OVERHEAD_BYTES = 64;
+
+    private final Cache<String, Object> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final long maxWeightBytes;
+    private final long refreshDelayNanos;
+    private final AtomicLong lastWriteNanos = new AtomicLong();
+    private final AtomicBoolean bumpScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> Thread.ofPlatform().name("result-cache-refresh").daemon().unstarted(runnable));
+
+    public UserResultCache(@Value("${app.users.result-cache.max-size:64MB}") DataSize maxSize,
+                           @Value("${app.users.result-cache.ttl:5m}") Duration ttl,
+                           @Value("${app.users.result-cache.refresh-delay:2s}") Duration refreshDelay) {
+        this.maxWeightBytes = maxSize.toBytes();
+        this.refreshDelayNanos = refreshDelay.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .<String, Object>weigher(UserResultCache::weigh)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<User> getUser(Integer id, Supplier<Optional<User>> loader) {
+        return (Optional<User>) cache.get("id:" + id, key -> loader.get());
+    }
+
+    /**
+     * @param sortBy The sort field; the caller must normalize it so equal queries get equal keys.
+     */
+    @SuppressWarnings("unchecked")
+    public Page<User> getPage(int page, int size, String sortBy, String direction, Supplier<Page<User>> loader) {
+        String key = "page:" + generation.get() + ":" + page + ":" + size + ":" + sortBy + ":" + direction;
+        return (Page<User>) cache.get(key, k -> loader.get());
+    }
+
+    /**
+     * Called after users were written. A lookup being loaded for one of them is discarded too.
+     */
+    public void invalidate(Collection<Integer> ids) {
+        generation.incrementAndGet();
+        for (Integer id : ids) {
+            cache.invalidate("id:" + id);
+        }
+        lastWriteNanos.set(System.nanoTime());
+        scheduleBump(refreshDelayNanos);
+    }
+
+    /**
+     * Called after the index was refreshed, so pages cached before that are not read again.
+     */
+    public void invalidatePages() {
+        generation.incrementAndGet();
+    }
+
+    // One bump is pending at a time; it reschedules itself while writes keep coming.
+    private void scheduleBump(long delayNanos) {
+        if (bumpScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::bumpAfterRefresh, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void bumpAfterRefresh() {
+        long coveredUntil = System.nanoTime() - refreshDelayNanos;
+        generation.incrementAndGet();
+        bumpScheduled.set(false);
+        long pending = lastWriteNanos.get() - coveredUntil;
+        if (pending > 0) {
+            scheduleBump(pending);
+        }
+    }
+
+    public ResultCacheStats getStats() {
+        CacheStats stats = cache.stats();
+        long weight = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+        return new ResultCacheStats(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                cache.estimatedSize(), weight, maxWeightBytes, generation.get());
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private static int weigh(String key, Object value) {
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * key.length();
+        if (value instanceof Optional<?> user && user.isPresent()) {
+            bytes += weighUser((User) user.get());
+        } else if (value instanceof Page<?> page) {
+            for (Object user : page.getContent()) {
+                bytes += weighUser((User) user);
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long weighUser(User user) {
+        return USER_OVERHEAD_BYTES
+                + 2L * (user.getName() != null ? user.getName().length() : 0)
+                + 2L * (user.getEmail() != null ? user.getEmail().length() : 0);
+    }
+}
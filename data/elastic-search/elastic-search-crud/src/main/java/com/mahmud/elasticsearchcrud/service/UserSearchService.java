@@ -0,0 +1,87 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
+import com.mahmud.elasticsearchcrud.model.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitSupport;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Full-text search and prefix autocomplete over the users index.
+ * <p>
+ * Exact conditions go into filter context: they are not scored and their results are cached per
+ * segment. Searches also opt into the shard request cache, which answers repeated identical
+ * searches until the next refresh.
+ * Autocomplete matches against the edge n-gram sub-fields, so a prefix is a term lookup instead of a
+ * prefix expansion. Prefixes longer than the longest n-gram are truncated to it at search time, so
+ * they still match. It skips the total hit count and fetches only the fields it returns.
+ */
+@Service
+public class UserSearchService {
+
+    private static final int MIN_PREFIX_LENGTH = 2; // The shortest edge n-gram that is indexed.
+
+    private final ElasticsearchOperations operations;
+
+    public UserSearchService(ElasticsearchOperations operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * @param text Words to look for in name and email, ranked by relevance; null to filter only.
+     * @param email If set, only the user with exactly this email matches.
+     */
+    public Page<User> search(String text, String email, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        Query query = NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> {
+                    if (text != null && !text.isBlank()) {
+                        b.must(m -> m.multiMatch(mm -> mm.query(text).fields("name^2", "email")));
+                    }
+                    if (email != null && !email.isBlank()) {
+                        b.filter(f -> f.term(t -> t.field("email.keyword").value(email)));
+                    }
+                    return b;
+                }))
+                .withPageable(pageable)
+                .withRequestCache(true)
+                .build();
+        SearchHits<User> hits = operations.search(query, User.class);
+        @SuppressWarnings("unchecked")
+        Page<User> users = (Page<User>) SearchHitSupport.unwrapSearchHits(SearchHitSupport.searchPageFor(hits, pageable));
+        return users;
+    }
+
+    /**
+     * Users whose name has a word starting with {@code prefix}, or whose email starts with it.
+     */
+    public List<User> suggest(String prefix, int size) {
+        if (prefix == null || prefix.trim().length() < MIN_PREFIX_LENGTH) {
+            return List.of();
+        }
+        String term = prefix.trim();
+        Query query = NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> b
+                        .should(s -> s.match(m -> m.field("name.autocomplete").query(term).operator(Operator.And)))
+                        .should(s -> s.match(m -> m.field("email.autocomplete").query(term)))
+                        .minimumShouldMatch("1")))
+                .withSourceFilter(new FetchSourceFilterBuilder().withIncludes("id", "name", "email").build())
+                .withPageable(PageRequest.of(0, size))
+                .withTrackTotalHits(false)
+                .withRequestCache(true)
+                .build();
+        return operations.search(query, User.class).getSearchHits().stream()
+                .map(SearchHit::getContent)
+                .toList();
+    }
+}
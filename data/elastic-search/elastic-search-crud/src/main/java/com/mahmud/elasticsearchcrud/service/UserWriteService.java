@@ -0,0 +1,156 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.InlineGet;
+import co.elastic.clients.elasticsearch._types.Result;
+import co.elastic.clients.elasticsearch.core.DeleteResponse;
+import co.elastic.clients.elasticsearch.core.UpdateResponse;
+import com.mahmud.elasticsearchcrud.model.User;
+import com.mahmud.elasticsearchcrud.model.UserPatch;
+import com.mahmud.elasticsearchcrud.repository.UserRepository;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.elasticsearch.NoSuchIndexException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Updates and deletes users in one request each, leaving the existence check to Elasticsearch.
+ * <p>
+ * Updates merge the given fields into the stored document; a missing document comes back as
+ * {@code document_missing_exception} and is reported as empty. When the caller passes the version
+ * it read ({@code _seq_no}/{@code _primary_term}), the write only applies if the document has not
+ * changed since, otherwise {@link OptimisticLockingFailureException} is thrown. A missing index is
+ * reported as {@link NoSuchIndexException}, not as a missing user.
+ * <p>
+ * All writes are reported to {@link UserWriteTracker}, so a running reindex picks them up.
+ */
+@Service
+public class UserWriteService {
+
+    private static final int NOT_FOUND = 404;
+    private static final int CONFLICT = 409;
+
+    private final ElasticsearchClient client;
+    private final UserRepository userRepository;
+    private final UserWriteTracker writeTracker;
+    private final String index;
+
+    public UserWriteService(ElasticsearchClient client,
+                            ElasticsearchOperations operations,
+                            UserRepository userRepository,
+                            UserWriteTracker writeTracker) {
+        this.client = client;
+        this.userRepository = userRepository;
+        this.writeTracker = writeTracker;
+        this.index = operations.getIndexCoordinatesFor(User.class).getIndexName();
+    }
+
+    /**
+     * Creates or overwrites a user.
+     */
+    public User save(User user) {
+        return writeTracker.track(List.of(user.getId()), () -> userRepository.save(user));
+    }
+
+    /**
+     * Replaces the name and email of an existing user.
+     * @param expected The version the caller read, or null to overwrite unconditionally.
+     * @return The stored user, or empty if there is no user with this ID.
+     */
+    public Optional<User> replace(Integer id, User user, SeqNoPrimaryTerm expected) {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("name", user.getName());
+        doc.put("email", user.getEmail());
+        return update(id, doc, expected);
+    }
+
+    /**
+     * Changes the non-null fields of {@code patch} on an existing user.
+     * @param expected The version the caller read, or null to apply unconditionally.
+     * @return The stored user, or empty if there is no user with this ID.
+     */
+    public Optional<User> patch(Integer id, UserPatch patch, SeqNoPrimaryTerm expected) {
+        Map<String, Object> doc = new HashMap<>();
+        if (patch.name() != null) {
+            doc.put("name", patch.name());
+        }
+        if (patch.email() != null) {
+            doc.put("email", patch.email());
+        }
+        return update(id, doc, expected);
+    }
+
+    /**
+     * @param expected The version the caller read, or null to delete unconditionally.
+     * @return false if there was no user with this ID.
+     */
+    public boolean delete(Integer id, SeqNoPrimaryTerm expected) {
+        return writeTracker.track(List.of(id), () -> doDelete(id, expected));
+    }
+
+    private boolean doDelete(Integer id, SeqNoPrimaryTerm expected) {
+        try {
+            DeleteResponse response = client.delete(d -> d
+                    .index(index)
+                    .id(String.valueOf(id))
+                    .ifSeqNo(expected != null ? expected.sequenceNumber() : null)
+                    .ifPrimaryTerm(expected != null ? expected.primaryTerm() : null));
+            return response.result() != Result.NotFound;
+        } catch (ElasticsearchException e) {
+            throw translate(e, id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Optional<User> update(Integer id, Map<String, Object> doc, SeqNoPrimaryTerm expected) {
+        return writeTracker.track(List.of(id), () -> doUpdate(id, doc, expected));
+    }
+
+    private Optional<User> doUpdate(Integer id, Map<String, Object> doc, SeqNoPrimaryTerm expected) {
+        try {
+            UpdateResponse<User> response = client.update(u -> u
+                    .index(index)
+                    .id(String.valueOf(id))
+                    .doc(doc)
+                    .ifSeqNo(expected != null ? expected.sequenceNumber() : null)
+                    .ifPrimaryTerm(expected != null ? expected.primaryTerm() : null)
+                    .source(s -> s.fetch(true)), User.class); // Returns the merged document, saving a read.
+            InlineGet<User> stored = response.get();
+            User user = stored != null && stored.source() != null ? stored.source() : new User(id, null, null);
+            user.setId(id);
+            user.setSeqNoPrimaryTerm(new SeqNoPrimaryTerm(response.seqNo(), response.primaryTerm()));
+            return Optional.of(user);
+        } catch (ElasticsearchException e) {
+            if (e.status() == NOT_FOUND && !isIndexNotFound(e)) {
+                return Optional.empty(); // document_missing_exception
+            }
+            throw translate(e, id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RuntimeException translate(ElasticsearchException e, Integer id) {
+        if (e.status() == CONFLICT) {
+            return new OptimisticLockingFailureException("User " + id + " was changed concurrently", e);
+        }
+        if (isIndexNotFound(e)) {
+            return new NoSuchIndexException(index, e);
+        }
+        return e;
+    }
+
+    private static boolean isIndexNotFound(ElasticsearchException e) {
+        return e.error() != null && "index_not_found_exception".equals(e.error().type());
+    }
+}
@@ -0,0 +1,187 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Sees every write this application makes to the users index.
+ * <p>
+ * Each completed write invalidates the written users in {@link UserResultCache}. While tracking
+ * is on, the IDs of completed writes are collected so a reindex can copy documents that changed
+ * after its scroll started. {@link #pause} holds back new writes and waits for the
+ * running ones, so the last changes can be copied and the alias swapped with nothing in between.
+ * <p>
+ * Writes made by other nodes are not seen here; a reindex finds them by their {@code _seq_no}.
+ * While another node swaps the alias it blocks writes to the old index, and a write rejected
+ * by that block is retried for up to {@code maxWritePause}, after which it goes to the new index.
+ */
+@Component
+public class UserWriteTracker {
+
+    static final String WRITE_BLOCKED = "cluster_block_exception";
+    private static final Duration BLOCKED_RETRY_INTERVAL = Duration.ofMillis(100);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private boolean paused;
+    private long inFlight;
+    private volatile Set<Integer> dirty; // null while not tracking
+
+    private final UserResultCache resultCache;
+    private final Duration maxWritePause;
+
+    public UserWriteTracker(UserResultCache resultCache,
+                            @Value("${app.users.reindex.max-write-pause:30s}") Duration maxWritePause) {
+        this.resultCache = resultCache;
+        this.maxWritePause = maxWritePause;
+    }
+
+    /**
+     * Runs a write of the given documents, again if another node's reindex blocked it.
+     */
+    public <T> T track(Collection<Integer> ids, Supplier<T> write) {
+        enter();
+        try {
+            long deadline = System.nanoTime() + maxWritePause.toNanos();
+            while (true) {
+                try {
+                    return write.get();
+                } catch (RuntimeException e) {
+                    if (!isWriteBlocked(e) || System.nanoTime() - deadline > 0) {
+                        throw e;
+                    }
+                }
+                try {
+                    Thread.sleep(BLOCKED_RETRY_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while writes were blocked", e);
+                }
+            }
+        } finally {
+            exit(ids);
+        }
+    }
+
+    /**
+     * Starts a write, waiting while writes are paused. Must be followed by {@link #exit}, possibly on another thread.
+     */
+    public void enter() {
+        lock.lock();
+        try {
+            while (paused) {
+                changed.awaitUninterruptibly();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends a write. The IDs are recorded only now, so a catch-up never copies a document before its write landed.
+     */
+    public void exit(Collection<Integer> ids) {
+        resultCache.invalidate(ids);
+        Set<Integer> tracked = dirty;
+        if (tracked != null) {
+            tracked.addAll(ids);
+        }
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the write was rejected because the index is blocked for writes.
+     */
+    static boolean isWriteBlocked(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ElasticsearchException ee && ee.error() != null
+                    && WRITE_BLOCKED.equals(ee.error().type())) {
+                return true;
+            }
+            if (cause instanceof UncategorizedElasticsearchException ue && ue.getResponseBody() != null
+                    && ue.getResponseBody().contains(WRITE_BLOCKED)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void startTracking() {
+        dirty = ConcurrentHashMap.newKeySet();
+    }
+
+    void stopTracking() {
+        dirty = null;
+    }
+
+    /**
+     * @return The IDs written since the previous call.
+     */
+    List<Integer> drainDirty() {
+        Set<Integer> tracked = dirty;
+        if (tracked == null) {
+            return List.of();
+        }
+        List<Integer> ids = List.copyOf(tracked);
+        tracked.removeAll(ids);
+        return ids;
+    }
+
+    /**
+     * Blocks new writes and waits until the running ones have finished.
+     * @param beforeWait Run after new writes are blocked, e.g. to flush buffered writes.
+     */
+    void pause(Duration timeout, Runnable beforeWait) throws TimeoutException {
+        lock.lock();
+        try {
+            paused = true;
+        } finally {
+            lock.unlock();
+        }
+        beforeWait.run();
+        lock.lock();
+        try {
+            long remaining = timeout.toNanos();
+            while (inFlight > 0) {
+                if (remaining <= 0) {
+                    throw new TimeoutException(inFlight + " writes still running after " + timeout);
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("Interrupted while waiting for running writes");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
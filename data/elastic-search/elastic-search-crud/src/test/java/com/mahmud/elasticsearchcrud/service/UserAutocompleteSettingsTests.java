@@ -0,0 +1,81 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs one token through the filter chains of users-settings.json, the way Elasticsearch applies
+ * them after the tokenizer, to check that every prefix the search analyzer produces is indexed.
+ */
+class UserAutocompleteSettingsTests {
+
+    private static JsonNode analysis;
+
+    @BeforeAll
+    static void readSettings() throws IOException {
+        try (InputStream settings = UserAutocompleteSettingsTests.class
+                .getResourceAsStream("/elasticsearch/users-settings.json")) {
+            analysis = new ObjectMapper().readTree(settings).path("analysis");
+        }
+    }
+
+    @Test
+    void emailPrefixLongerThanTheLongestNgramMatches() {
+        String email = "John.Smith@example.com"; // 22 characters
+
+        List<String> indexed = analyze("email_autocomplete", email);
+
+        assertThat(indexed).containsAll(analyze("email_autocomplete_search", email));
+        assertThat(indexed).containsAll(analyze("email_autocomplete_search", email.substring(0, 21)));
+        assertThat(indexed).containsAll(analyze("email_autocomplete_search", "john.smith"));
+    }
+
+    @Test
+    void longNameWordMatches() {
+        String word = "Wolfeschlegelsteinhausen"; // 24 characters
+
+        List<String> indexed = analyze("name_autocomplete", word);
+
+        assertThat(indexed).containsAll(analyze("name_autocomplete_search", word));
+        assertThat(indexed).containsAll(analyze("name_autocomplete_search", "wolfe"));
+    }
+
+    private static List<String> analyze(String analyzer, String token) {
+        List<String> terms = List.of(token);
+        for (JsonNode filter : analysis.path("analyzer").path(analyzer).path("filter")) {
+            terms = apply(filter.asText(), terms);
+        }
+        return terms;
+    }
+
+    private static List<String> apply(String filter, List<String> terms) {
+        JsonNode custom = analysis.path("filter").path(filter);
+        String type = custom.isMissingNode() ? filter : custom.path("type").asText();
+        List<String> result = new ArrayList<>();
+        for (String term : terms) {
+            switch (type) {
+                case "lowercase" -> result.add(term.toLowerCase(Locale.ROOT));
+                case "asciifolding" -> result.add(term); // The tokens used here are ASCII already.
+                case "truncate" -> result.add(term.substring(0, Math.min(custom.path("length").asInt(), term.length())));
+                case "edge_ngram" -> {
+                    int max = Math.min(custom.path("max_gram").asInt(), term.length());
+                    for (int length = custom.path("min_gram").asInt(); length <= max; length++) {
+                        result.add(term.substring(0, length));
+                    }
+                }
+                default -> throw new IllegalArgumentException("Filter type not simulated: " + type);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahmud.elasticsearchcrud.model.BulkIngestResult;
+import com.mahmud.elasticsearchcrud.model.BulkItemError;
+import com.mahmud.elasticsearchcrud.model.User;
+import jakarta.validation.Validation;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class UserBulkIndexerTests {
+
+    private final ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+    private final UserWriteTracker writeTracker = mock(UserWriteTracker.class);
+    private final UserBulkIndexer indexer = indexer();
+
+    @AfterEach
+    void close() throws Exception {
+        indexer.destroy();
+    }
+
+    @Test
+    void nullAndUnmappableItemsAreReportedAndSkipped() throws IOException {
+        BulkIngestResult result = ingest("""
+                [null,
+                 {"id": "one", "name": "A", "email": "a@example.com"},
+                 {"id": 3, "name": null, "email": "c@example.com"}]
+                """);
+
+        assertThat(result.indexed()).isZero();
+        assertThat(result.errors()).hasSize(3)
+                .extracting(BulkItemError::status).containsOnly(400);
+        assertThat(result.errors().get(0).reason()).containsIgnoringCase("null");
+        assertThat(result.errors().get(2).id()).isEqualTo(3); // Read after the bad "id", so the iterator carried on.
+        verifyNoInteractions(writeTracker);
+    }
+
+    @Test
+    void malformedLineEndsTheUploadWithAPartialResult() throws IOException {
+        BulkIngestResult result = ingest("""
+                {"id": 1, "name": null, "email": "a@example.com"}
+                {"id": 2, "name": "B" "email": "b@example.com"}
+                {"id": 3, "name": "C", "email": "c@example.com"}
+                """);
+
+        assertThat(result.failed()).isEqualTo(2);
+        assertThat(result.errors().get(0).id()).isEqualTo(1);
+        assertThat(result.errors().get(1).status()).isEqualTo(400);
+        assertThat(result.errors().get(1).reason()).contains("line 2");
+        verifyNoInteractions(writeTracker);
+    }
+
+    private BulkIngestResult ingest(String body) throws IOException {
+        return indexer.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private UserBulkIndexer indexer() {
+        ElasticsearchClient client = mock(ElasticsearchClient.class);
+        when(client._transport()).thenReturn(mock(ElasticsearchTransport.class));
+        when(operations.getIndexCoordinatesFor(User.class)).thenReturn(IndexCoordinates.of("users"));
+        return new UserBulkIndexer(client, mock(RestClient.class), operations, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), writeTracker, mock(UserResultCache.class),
+                1000, DataSize.ofMegabytes(5), Duration.ofSeconds(1), 2, 3, Duration.ofMillis(200), 10_000,
+                Duration.ofMinutes(5));
+    }
+}
@@ -0,0 +1,160 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.PutIndicesSettingsRequest;
+import co.elastic.clients.util.ObjectBuilder;
+import com.mahmud.elasticsearchcrud.model.ReindexStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs reindex jobs against a mocked client. Its deep stubs answer every request with empty
+ * results: no settings, no shards, no documents, so a job goes straight from the copy to the swap.
+ */
+class UserReindexServiceTests {
+
+    private final ElasticsearchClient client = mock(ElasticsearchClient.class, RETURNS_DEEP_STUBS);
+    private final ElasticsearchIndicesClient indices = client.indices();
+    private final UserIndexManager indexManager = mock(UserIndexManager.class);
+    private final UserWriteTracker writeTracker = mock(UserWriteTracker.class);
+    private final UserReindexService reindexService = new UserReindexService(client, indexManager, writeTracker,
+            mock(UserBulkIndexer.class), 1000, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+    @AfterEach
+    void close() {
+        reindexService.destroy();
+    }
+
+    @Test
+    void secondStartIsRefusedWhileAJobRuns() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(indexManager.currentIndices()).thenAnswer(invocation -> {
+            release.await();
+            throw new IOException("stop here");
+        });
+
+        reindexService.start(1, 0);
+
+        assertThatThrownBy(() -> reindexService.start(1, 0))
+                .isInstanceOf(IllegalStateException.class);
+        release.countDown();
+        assertThat(awaitFinished().state()).isEqualTo("FAILED");
+        reindexService.start(1, 0); // Accepted once the first one has finished.
+        awaitFinished();
+    }
+
+    @Test
+    void failedStepDeletesTheTargetAndLeavesTheAliasAlone() throws Exception {
+        when(indexManager.currentIndices()).thenReturn(List.of("users-v1"));
+        when(indexManager.createVersionedIndex()).thenReturn("users-v2");
+        when(client.count(any(Function.class))).thenThrow(new IOException("count failed"));
+
+        reindexService.start(1, 0);
+        ReindexStatus status = awaitFinished();
+
+        assertThat(status.state()).isEqualTo("FAILED");
+        assertThat(status.error()).contains("count failed");
+        assertThat(deletedIndices()).containsExactly("users-v2");
+        verify(indexManager, never()).swap(anyList(), anyString());
+        verify(writeTracker, atLeastOnce()).stopTracking();
+        assertThat(writeBlocks()).isEmpty();
+    }
+
+    @Test
+    void failedSwapLiftsTheWriteBlock() throws Exception {
+        when(indexManager.currentIndices()).thenReturn(List.of("users-v1"));
+        when(indexManager.createVersionedIndex()).thenReturn("users-v2");
+        when(indexManager.alias()).thenReturn("users");
+        doThrow(new IOException("swap failed")).when(indexManager).swap(List.of("users-v1"), "users-v2");
+
+        reindexService.start(1, 0);
+        ReindexStatus status = awaitFinished();
+
+        assertThat(status.state()).isEqualTo("FAILED");
+        assertThat(writeBlocks()).containsExactly(true, false);
+        assertThat(deletedIndices()).containsExactly("users-v2");
+        verify(writeTracker).resume();
+    }
+
+    @Test
+    void swapLiftsTheWriteBlockOnTheOldIndex() throws Exception {
+        when(indexManager.currentIndices()).thenReturn(List.of("users-v1"));
+        when(indexManager.createVersionedIndex()).thenReturn("users-v2");
+        when(indexManager.alias()).thenReturn("users");
+
+        reindexService.start(1, 0);
+
+        assertThat(awaitFinished().state()).isEqualTo("DONE");
+        verify(indexManager).swap(List.of("users-v1"), "users-v2");
+        assertThat(writeBlocks()).containsExactly(true, false);
+        assertThat(deletedIndices()).isEmpty();
+    }
+
+    @Test
+    void swapOfALegacyConcreteIndexLeavesNoBlockToLift() throws Exception {
+        // Before the first versioned index, "users" is the concrete index itself; the swap deletes it.
+        when(indexManager.currentIndices()).thenReturn(List.of("users"));
+        when(indexManager.createVersionedIndex()).thenReturn("users-v1");
+        when(indexManager.alias()).thenReturn("users");
+
+        reindexService.start(1, 0);
+
+        assertThat(awaitFinished().state()).isEqualTo("DONE");
+        assertThat(writeBlocks()).containsExactly(true);
+    }
+
+    private ReindexStatus awaitFinished() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (reindexService.status().finishedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(reindexService.status().finishedAt()).isNotNull();
+        return reindexService.status();
+    }
+
+    // The index.blocks.write values put, in order; settings updates without a block are left out.
+    @SuppressWarnings("unchecked")
+    private List<Boolean> writeBlocks() throws IOException {
+        ArgumentCaptor<Function<PutIndicesSettingsRequest.Builder, ObjectBuilder<PutIndicesSettingsRequest>>> requests =
+                ArgumentCaptor.forClass(Function.class);
+        verify(indices, atLeastOnce()).putSettings(requests.capture());
+        return requests.getAllValues().stream()
+                .map(request -> request.apply(new PutIndicesSettingsRequest.Builder()).build().settings())
+                .filter(settings -> settings.blocks() != null)
+                .map(settings -> settings.blocks().write())
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> deletedIndices() throws IOException {
+        ArgumentCaptor<Function<DeleteIndexRequest.Builder, ObjectBuilder<DeleteIndexRequest>>> requests =
+                ArgumentCaptor.forClass(Function.class);
+        verify(indices, atLeast(0)).delete(requests.capture());
+        return requests.getAllValues().stream()
+                .flatMap(request -> request.apply(new DeleteIndexRequest.Builder()).build().index().stream())
+                .toList();
+    }
+}
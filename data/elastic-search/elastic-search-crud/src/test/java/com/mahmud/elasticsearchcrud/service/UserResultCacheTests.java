@@ -0,0 +1,114 @@
+package com.mahmud.elasticsearchcrud.service;
+
+import com.mahmud.elasticsearchcrud.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserResultCacheTests {
+
+    private static final Duration REFRESH_DELAY = Duration.ofMillis(100);
+
+    private final UserResultCache cache = new UserResultCache(DataSize.ofMegabytes(1), Duration.ofMinutes(5), REFRESH_DELAY);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void close() {
+        cache.destroy();
+    }
+
+    @Test
+    void writeEvictsTheLookupOfThatUserOnly() {
+        getUser(1);
+        getUser(2);
+        getUser(1);
+        assertThat(loads).hasValue(2);
+
+        cache.invalidate(List.of(1));
+
+        getUser(1);
+        getUser(2);
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void missingUserIsCachedUntilItIsWritten() {
+        cache.getUser(7, () -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        assertThat(getUser(7)).isEmpty(); // Still the cached "not found".
+
+        cache.invalidate(List.of(7));
+
+        assertThat(getUser(7)).isPresent();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void writeStartsANewPageGeneration() {
+        long generation = cache.getStats().generation();
+        getPage();
+        getPage();
+        assertThat(loads).hasValue(1);
+
+        cache.invalidate(List.of(42)); // Any user may be on the page.
+
+        assertThat(cache.getStats().generation()).isEqualTo(generation + 1);
+        getPage();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void pagesAreInvalidatedAgainAfterTheRefreshDelay() throws InterruptedException {
+        long generation = cache.getStats().generation();
+        cache.invalidate(List.of(42));
+        getPage(); // Loaded before the index refresh made the write visible.
+        getPage();
+        assertThat(loads).hasValue(1);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (cache.getStats().generation() < generation + 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(cache.getStats().generation()).isEqualTo(generation + 2);
+        getPage();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void invalidatePagesKeepsLookups() {
+        getUser(1);
+        getPage();
+
+        cache.invalidatePages();
+
+        getUser(1);
+        getPage();
+        assertThat(loads).hasValue(3);
+    }
+
+    private Optional<User> getUser(int id) {
+        return cache.getUser(id, () -> {
+            loads.incrementAndGet();
+            return Optional.of(new User(id, "User " + id, "user" + id + "@example.com"));
+        });
+    }
+
+    private Page<User> getPage() {
+        return cache.getPage(0, 10, "id", "asc", () -> {
+            loads.incrementAndGet();
+            return new PageImpl<>(List.of(new User(1, "User 1", "user1@example.com")));
+        });
+    }
+}
@@ -0,0 +1,30 @@
+package com.mahmud.r2dbcflywaypostgres.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Adds acquire latency to the pool metrics. Boot already publishes the {@code r2dbc.pool.*} gauges
+ * (acquired, allocated, idle, pending and their maximums) for the pool behind the connection factory.
+ */
+@Configuration(proxyBeanMethods = false)
+public class ConnectionPoolMetricsConfig {
+
+    // Static, and the registry resolved lazily, so that post-processing does not instantiate beans early.
+    @Bean
+    static BeanPostProcessor connectionAcquireTimer(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ConnectionFactory connectionFactory && !(bean instanceof TimedConnectionFactory)) {
+                    return new TimedConnectionFactory(connectionFactory, meterRegistry.getObject(), beanName);
+                }
+                return bean;
+            }
+        };
+    }
+}
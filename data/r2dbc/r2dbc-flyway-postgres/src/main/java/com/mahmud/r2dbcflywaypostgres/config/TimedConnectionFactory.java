@@ -0,0 +1,72 @@
+package com.mahmud.r2dbcflywaypostgres.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long {@link #create()} takes on the wrapped factory. On a connection pool that is the
+ * time spent waiting for a connection, published as {@code r2dbc.pool.acquire} with an
+ * {@code outcome} of {@code success}, {@code error} or {@code cancelled}.
+ * <p>
+ * Implements {@link Wrapped} so that the pool can still be found behind it, e.g. by the pool gauges.
+ */
+class TimedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory> {
+
+    static final String ACQUIRE_METRIC = "r2dbc.pool.acquire";
+
+    private final ConnectionFactory delegate;
+    private final Timer success;
+    private final Timer error;
+    private final Timer cancelled;
+
+    TimedConnectionFactory(ConnectionFactory delegate, MeterRegistry meterRegistry, String name) {
+        this.delegate = delegate;
+        this.success = timer(meterRegistry, name, "success");
+        this.error = timer(meterRegistry, name, "error");
+        this.cancelled = timer(meterRegistry, name, "cancelled");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String name, String outcome) {
+        return Timer.builder(ACQUIRE_METRIC)
+                .description("Time taken to acquire a connection")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.<Connection>from(delegate.create())
+                    .doFinally(signal -> outcome(signal).record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private Timer outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_ERROR -> error;
+            case CANCEL -> cancelled;
+            default -> success;
+        };
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegate;
+    }
+}
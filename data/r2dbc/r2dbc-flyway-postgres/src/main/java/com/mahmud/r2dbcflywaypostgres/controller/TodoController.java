@@ -1,20 +1,36 @@
 package com.mahmud.r2dbcflywaypostgres.controller;
 
 import com.mahmud.r2dbcflywaypostgres.domain.Todo;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoChange;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoFilter;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoPage;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoPatch;
+import com.mahmud.r2dbcflywaypostgres.service.TodoChangeFeed;
 import com.mahmud.r2dbcflywaypostgres.service.TodoService;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+
 @RestController
 @RequestMapping("/api/todos")
 public class TodoController {
 
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
     private final TodoService todoService;
+    private final TodoChangeFeed changeFeed;
 
-    public TodoController(TodoService todoService) {
+    public TodoController(TodoService todoService, TodoChangeFeed changeFeed) {
         this.todoService = todoService;
+        this.changeFeed = changeFeed;
     }
 
     @GetMapping
@@ -22,6 +38,41 @@ public class TodoController {
         return todoService.getAllTodos();
     }
 
+    @GetMapping("/page")
+    public Mono<TodoPage> getTodoPage(@RequestParam(required = false) Long cursor,
+                                      @RequestParam(defaultValue = "50") int size) {
+        return todoService.getTodoPage(cursor, size);
+    }
+
+    // Each todo is written and flushed as it arrives, so the response is never buffered as a whole.
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Todo> streamTodos(@RequestParam(required = false) Long cursor) {
+        return todoService.streamTodos(cursor);
+    }
+
+    @GetMapping("/search")
+    public Flux<Todo> searchTodos(@RequestParam(required = false) Boolean completed,
+                                  @RequestParam(required = false) Integer minPriority,
+                                  @RequestParam(required = false) Integer maxPriority,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdAfter,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdBefore,
+                                  @RequestParam(defaultValue = "createdAt") String sort,
+                                  @RequestParam(defaultValue = "DESC") Sort.Direction direction,
+                                  @RequestParam(defaultValue = "50") int size) {
+        TodoFilter filter = new TodoFilter(completed, minPriority, maxPriority, createdAfter, createdBefore);
+        return todoService.searchTodos(filter, sort, direction, size);
+    }
+
+    // The heartbeat comments keep idle connections from being closed by proxies.
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<TodoChange>> streamChanges() {
+        Flux<ServerSentEvent<TodoChange>> changes = changeFeed.changes()
+                .map(change -> ServerSentEvent.builder(change).event(change.op()).build());
+        Flux<ServerSentEvent<TodoChange>> heartbeats = Flux.interval(HEARTBEAT_INTERVAL)
+                .map(tick -> ServerSentEvent.<TodoChange>builder().comment("heartbeat").build());
+        return Flux.merge(changes, heartbeats);
+    }
+
     @GetMapping("/completed/{completed}")
     public Flux<Todo> getTodosByCompleted(@PathVariable boolean completed) {
         return todoService.getTodosByCompleted(completed);
@@ -38,11 +89,27 @@ public class TodoController {
         return todoService.createTodo(todo);
     }
 
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Flux<Todo> createTodos(@RequestBody Flux<Todo> todos) {
+        return todoService.createTodos(todos);
+    }
+
+    @PutMapping("/batch")
+    public Flux<Todo> updateTodos(@RequestBody Flux<Todo> todos) {
+        return todoService.updateTodos(todos);
+    }
+
     @PutMapping("/{id}")
     public Mono<Todo> updateTodo(@PathVariable Long id, @RequestBody Todo todo) {
         return todoService.updateTodo(id, todo);
     }
 
+    @PatchMapping("/{id}")
+    public Mono<Todo> patchTodo(@PathVariable Long id, @RequestBody TodoPatch patch) {
+        return todoService.patchTodo(id, patch);
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> deleteTodo(@PathVariable Long id) {
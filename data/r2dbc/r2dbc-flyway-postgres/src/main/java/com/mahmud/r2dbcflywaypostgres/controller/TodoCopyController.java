@@ -0,0 +1,38 @@
+package com.mahmud.r2dbcflywaypostgres.controller;
+
+import com.mahmud.r2dbcflywaypostgres.domain.TodoCopyLayout;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoImportResult;
+import com.mahmud.r2dbcflywaypostgres.service.TodoCopyService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/todos")
+public class TodoCopyController {
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final TodoCopyService todoCopyService;
+
+    public TodoCopyController(TodoCopyService todoCopyService) {
+        this.todoCopyService = todoCopyService;
+    }
+
+    // CSV needs a header line with the columns of the layout; binary must be COPY's binary format.
+    // layout=EXPORT takes a file from /export as is, IDs included.
+    @PostMapping(value = "/import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public Mono<TodoImportResult> importTodos(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                              @RequestParam(defaultValue = "NEW") TodoCopyLayout layout,
+                                              @RequestBody Flux<DataBuffer> data) {
+        return todoCopyService.importTodos(data, MediaType.APPLICATION_OCTET_STREAM.isCompatibleWith(contentType), layout);
+    }
+
+    @GetMapping(value = "/export", produces = TEXT_CSV_VALUE)
+    public Flux<DataBuffer> exportTodos() {
+        return todoCopyService.exportTodos();
+    }
+}
@@ -2,6 +2,7 @@ package com.mahmud.r2dbcflywaypostgres.domain;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Table;
 
 import java.time.LocalDateTime;
@@ -16,4 +17,6 @@ public class Todo {
     private Boolean completed = false;
     private LocalDateTime createdAt;
     private Integer priority = 0; // New field
+    @Version
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.mahmud.r2dbcflywaypostgres.domain;
+
+/**
+ * A row change announced by the {@code todos_notify_change} trigger, or a bulk import announced once
+ * by {@code TodoCopyService} in place of one change per imported row.
+ * @param op {@code insert}, {@code update}, {@code delete} or {@code import}.
+ * @param id The changed todo; null for {@code import}, which only adds rows and names none of them.
+ * @param version The version after the change, or the last version for a delete; null for {@code import}.
+ */
+public record TodoChange(String op, Long id, Long version) {
+}
@@ -0,0 +1,30 @@
+package com.mahmud.r2dbcflywaypostgres.domain;
+
+/**
+ * The columns of a todo import, in file order.
+ */
+public enum TodoCopyLayout {
+
+    /**
+     * New todos: {@code title,description,completed,priority}. The database assigns the rest.
+     */
+    NEW("title, description, completed, priority"),
+
+    /**
+     * Whole rows as written by the export, IDs and versions included, e.g. to move todos to another database.
+     */
+    EXPORT("id, title, description, completed, created_at, priority, version");
+
+    private final String columns;
+
+    TodoCopyLayout(String columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * @return The column list, comma separated.
+     */
+    public String columns() {
+        return columns;
+    }
+}
@@ -0,0 +1,13 @@
+package com.mahmud.r2dbcflywaypostgres.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Todo search criteria. Null fields do not restrict the result; bounds are inclusive.
+ */
+public record TodoFilter(Boolean completed,
+                         Integer minPriority,
+                         Integer maxPriority,
+                         LocalDateTime createdAfter,
+                         LocalDateTime createdBefore) {
+}
@@ -0,0 +1,4 @@
+package com.mahmud.r2dbcflywaypostgres.domain;
+
+public record TodoImportResult(long imported, long elapsedMillis) {
+}
@@ -0,0 +1,10 @@
+package com.mahmud.r2dbcflywaypostgres.domain;
+
+import java.util.List;
+
+/**
+ * One page of todos in ID order.
+ * @param nextCursor The ID to pass as {@code cursor} for the next page, or null on the last page.
+ */
+public record TodoPage(List<Todo> todos, Long nextCursor) {
+}
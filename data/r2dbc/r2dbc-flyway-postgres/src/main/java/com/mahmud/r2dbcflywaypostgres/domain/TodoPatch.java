@@ -0,0 +1,8 @@
+package com.mahmud.r2dbcflywaypostgres.domain;
+
+/**
+ * Partial update of a todo. Null fields are left unchanged.
+ * @param version The version the client last read, or null to update regardless of concurrent changes.
+ */
+public record TodoPatch(String title, String description, Boolean completed, Integer priority, Long version) {
+}
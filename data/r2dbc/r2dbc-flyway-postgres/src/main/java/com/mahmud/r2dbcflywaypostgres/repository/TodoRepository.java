@@ -1,9 +1,14 @@
 package com.mahmud.r2dbcflywaypostgres.repository;
 
 import com.mahmud.r2dbcflywaypostgres.domain.Todo;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import reactor.core.publisher.Flux;
 
-public interface TodoRepository extends R2dbcRepository<Todo, Long> {
+public interface TodoRepository extends R2dbcRepository<Todo, Long>, TodoRepositoryCustom {
     Flux<Todo> findByCompleted(Boolean completed);
-}
\ No newline at end of file
+
+    // Keyset pagination: the primary key index serves both the filter and the order.
+    @Query("SELECT * FROM todos WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<Todo> findPageAfter(long afterId, int limit);
+}
@@ -0,0 +1,64 @@
+package com.mahmud.r2dbcflywaypostgres.repository;
+
+import com.mahmud.r2dbcflywaypostgres.domain.Todo;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoCopyLayout;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoFilter;
+import io.netty.buffer.ByteBuf;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queries that need the {@link org.springframework.r2dbc.core.DatabaseClient} directly.
+ */
+public interface TodoRepositoryCustom {
+
+    /**
+     * Streams every todo with an ID above {@code afterId} in ID order, fetching {@code fetchSize}
+     * rows at a time as the subscriber requests them.
+     */
+    Flux<Todo> streamAfter(long afterId, int fetchSize);
+
+    /**
+     * Inserts all {@code todos} with a single multi-row statement.
+     * @return The inserted rows, including their generated IDs and creation times.
+     */
+    Flux<Todo> insertAll(List<Todo> todos);
+
+    /**
+     * Overwrites title, description, completed and priority of all {@code todos} with a single statement.
+     * Todos whose ID does not exist, or that carry a version the row no longer has, are skipped.
+     * Each ID may appear only once.
+     * @return The updated rows.
+     */
+    Flux<Todo> updateAll(List<Todo> todos);
+
+    /**
+     * Sets {@code columns} and increments the version in a single conditional statement.
+     * @param expectedVersion The version the row must still have, or null to skip the check.
+     * @param columns Values by column name; a null value must be given as a typed {@code io.r2dbc.spi.Parameter}.
+     * @return The updated row, or empty if the ID does not exist or the version did not match.
+     */
+    Mono<Todo> updateColumns(long id, Long expectedVersion, Map<String, Object> columns);
+
+    /**
+     * Returns up to {@code limit} todos matching {@code filter}, ordered by {@code sort} and then by ID.
+     */
+    Flux<Todo> search(TodoFilter filter, Sort sort, int limit);
+
+    /**
+     * Streams {@code data} into {@code COPY todos (<layout columns>) FROM STDIN}.
+     * @param binary Whether {@code data} is in the binary COPY format rather than CSV with a header line.
+     * @return The number of rows copied.
+     */
+    Mono<Long> copyIn(Publisher<ByteBuf> data, boolean binary, TodoCopyLayout layout);
+
+    /**
+     * Moves the ID sequence past the highest ID, after rows were copied in with their IDs.
+     */
+    Mono<Void> syncIdSequence();
+}
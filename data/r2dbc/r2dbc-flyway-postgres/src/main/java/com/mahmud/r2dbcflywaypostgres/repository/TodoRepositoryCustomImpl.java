@@ -0,0 +1,170 @@
+package com.mahmud.r2dbcflywaypostgres.repository;
+
+import com.mahmud.r2dbcflywaypostgres.domain.Todo;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoCopyLayout;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoFilter;
+import io.netty.buffer.ByteBuf;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class TodoRepositoryCustomImpl implements TodoRepositoryCustom {
+
+    private final R2dbcEntityOperations entityOperations;
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+
+    TodoRepositoryCustomImpl(R2dbcEntityOperations entityOperations) {
+        this.entityOperations = entityOperations;
+        this.databaseClient = entityOperations.getDatabaseClient();
+        this.converter = entityOperations.getConverter();
+    }
+
+    @Override
+    public Flux<Todo> streamAfter(long afterId, int fetchSize) {
+        // With a fetch size the driver executes a portal and asks Postgres for the next rows only
+        // once the previous ones have been requested downstream, so a slow client slows the query.
+        return databaseClient.sql("SELECT * FROM todos WHERE id > :afterId ORDER BY id")
+                .bind("afterId", afterId)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map((row, metadata) -> converter.read(Todo.class, row, metadata))
+                .all()
+                .limitRate(fetchSize);
+    }
+
+    // unnest turns the bound arrays into rows, so a chunk of any size is one statement and one round trip.
+    @Override
+    public Flux<Todo> insertAll(List<Todo> todos) {
+        if (todos.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql("""
+                        INSERT INTO todos (title, description, completed, priority)
+                        SELECT title, description, coalesce(completed, false), coalesce(priority, 0)
+                        FROM unnest(:titles::varchar[], :descriptions::text[], :completed::boolean[], :priorities::integer[])
+                            AS t(title, description, completed, priority)
+                        RETURNING *
+                        """)
+                .bind("titles", todos.stream().map(Todo::getTitle).toArray(String[]::new))
+                .bind("descriptions", todos.stream().map(Todo::getDescription).toArray(String[]::new))
+                .bind("completed", todos.stream().map(Todo::getCompleted).toArray(Boolean[]::new))
+                .bind("priorities", todos.stream().map(Todo::getPriority).toArray(Integer[]::new))
+                .map((row, metadata) -> converter.read(Todo.class, row, metadata))
+                .all();
+    }
+
+    @Override
+    public Flux<Todo> updateAll(List<Todo> todos) {
+        if (todos.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql("""
+                        UPDATE todos
+                        SET title = u.title,
+                            description = u.description,
+                            completed = coalesce(u.completed, false),
+                            priority = coalesce(u.priority, 0),
+                            version = todos.version + 1
+                        FROM unnest(:ids::bigint[], :versions::bigint[], :titles::varchar[], :descriptions::text[], :completed::boolean[], :priorities::integer[])
+                            AS u(id, version, title, description, completed, priority)
+                        WHERE todos.id = u.id
+                          AND (u.version IS NULL OR todos.version = u.version)
+                        RETURNING todos.*
+                        """)
+                .bind("ids", todos.stream().map(Todo::getId).toArray(Long[]::new))
+                .bind("versions", todos.stream().map(Todo::getVersion).toArray(Long[]::new))
+                .bind("titles", todos.stream().map(Todo::getTitle).toArray(String[]::new))
+                .bind("descriptions", todos.stream().map(Todo::getDescription).toArray(String[]::new))
+                .bind("completed", todos.stream().map(Todo::getCompleted).toArray(Boolean[]::new))
+                .bind("priorities", todos.stream().map(Todo::getPriority).toArray(Integer[]::new))
+                .map((row, metadata) -> converter.read(Todo.class, row, metadata))
+                .all();
+    }
+
+    // The column names come from the service, never from the request.
+    @Override
+    public Mono<Todo> updateColumns(long id, Long expectedVersion, Map<String, Object> columns) {
+        String assignments = columns.keySet().stream()
+                .map(column -> column + " = :" + column)
+                .collect(Collectors.joining(", "));
+        String sql = "UPDATE todos SET " + (assignments.isEmpty() ? "" : assignments + ", ")
+                + "version = version + 1 WHERE id = :id"
+                + (expectedVersion != null ? " AND version = :version" : "")
+                + " RETURNING *";
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql).bind("id", id);
+        if (expectedVersion != null) {
+            spec = spec.bind("version", expectedVersion);
+        }
+        for (Map.Entry<String, Object> column : columns.entrySet()) {
+            spec = spec.bind(column.getKey(), column.getValue());
+        }
+        return spec.map((row, metadata) -> converter.read(Todo.class, row, metadata)).one();
+    }
+
+    // The V4 indexes lead with completed and continue with priority or created_at, then id.
+    @Override
+    public Flux<Todo> search(TodoFilter filter, Sort sort, int limit) {
+        Criteria criteria = Criteria.empty();
+        if (filter.completed() != null) {
+            criteria = criteria.and("completed").is(filter.completed());
+        }
+        if (filter.minPriority() != null) {
+            criteria = criteria.and("priority").greaterThanOrEquals(filter.minPriority());
+        }
+        if (filter.maxPriority() != null) {
+            criteria = criteria.and("priority").lessThanOrEquals(filter.maxPriority());
+        }
+        if (filter.createdAfter() != null) {
+            criteria = criteria.and("createdAt").greaterThanOrEquals(filter.createdAfter());
+        }
+        if (filter.createdBefore() != null) {
+            criteria = criteria.and("createdAt").lessThanOrEquals(filter.createdBefore());
+        }
+        return entityOperations.select(Todo.class)
+                .matching(Query.query(criteria).sort(sort).limit(limit))
+                .all();
+    }
+
+    // Runs on the connection of the surrounding transaction, if there is one.
+    @Override
+    public Mono<Long> copyIn(Publisher<ByteBuf> data, boolean binary, TodoCopyLayout layout) {
+        String sql = "COPY todos (" + layout.columns() + ") FROM STDIN WITH ("
+                + (binary ? "FORMAT binary" : "FORMAT csv, HEADER true") + ")";
+        return databaseClient.inConnection(connection -> postgres(connection).copyIn(sql, data));
+    }
+
+    // setval() is not rolled back with the transaction, but a sequence ahead of the IDs is harmless.
+    @Override
+    public Mono<Void> syncIdSequence() {
+        return databaseClient.sql("SELECT setval(pg_get_serial_sequence('todos', 'id'), max(id)) FROM todos HAVING max(id) IS NOT NULL")
+                .then();
+    }
+
+    // Connections from the pool and from Spring's transaction support are wrappers around the driver's.
+    private static PostgresqlConnection postgres(Connection connection) {
+        if (connection instanceof PostgresqlConnection postgres) {
+            return postgres;
+        }
+        PostgresqlConnection postgres = connection instanceof Wrapped<?> wrapped
+                ? wrapped.unwrap(PostgresqlConnection.class)
+                : null;
+        if (postgres == null) {
+            throw new IllegalStateException("COPY needs a Postgres connection, got " + connection.getClass().getName());
+        }
+        return postgres;
+    }
+}
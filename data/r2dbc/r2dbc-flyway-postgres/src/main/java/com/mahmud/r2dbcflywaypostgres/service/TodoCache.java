@@ -0,0 +1,80 @@
+package com.mahmud.r2dbcflywaypostgres.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mahmud.r2dbcflywaypostgres.domain.Todo;
+import com.mahmud.r2dbcflywaypostgres.repository.TodoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Read-through cache of todos by ID.
+ * <p>
+ * The cache holds futures, so concurrent misses for the same ID share one query. Missing todos and
+ * failed loads are not cached. Writes through {@link TodoService} invalidate their entries, and so do
+ * the changes announced on the {@link TodoChangeFeed}, which covers writes from other nodes.
+ * Changes missed while the feed reconnects are bounded by the TTL.
+ * <p>
+ * Hits, misses, loads and evictions are published as the {@code cache.*} meters with {@code cache=todos}.
+ */
+@Component
+public class TodoCache {
+
+    static final String CACHE_NAME = "todos";
+
+    private final TodoRepository todoRepository;
+    private final TodoChangeFeed changeFeed;
+    private final AsyncCache<Long, Todo> cache;
+
+    public TodoCache(TodoRepository todoRepository,
+                     TodoChangeFeed changeFeed,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.todos.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${app.todos.cache.ttl:5m}") Duration ttl) {
+        this.todoRepository = todoRepository;
+        this.changeFeed = changeFeed;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .<Long, Todo>buildAsync(), CACHE_NAME);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribeToChanges() {
+        changeFeed.changes()
+                .retry() // Resubscribe if the feed closes this subscription on overflow.
+                .subscribe(change -> invalidate(change.id()));
+    }
+
+    /**
+     * @return The todo, or empty if it does not exist.
+     */
+    public Mono<Todo> get(Long id) {
+        // Cancelling one caller must not cancel the load the other callers are waiting for.
+        return Mono.defer(() -> Mono.fromFuture(
+                cache.get(id, (key, executor) -> todoRepository.findById(key).toFuture()), true));
+    }
+
+    // Applies pending evictions first, so that the size respects the bound.
+    long size() {
+        cache.synchronous().cleanUp();
+        return cache.synchronous().estimatedSize();
+    }
+
+    /**
+     * Call after the write has completed, so that a load racing with it cannot repopulate the old row.
+     */
+    public void invalidate(Long id) {
+        if (id != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+}
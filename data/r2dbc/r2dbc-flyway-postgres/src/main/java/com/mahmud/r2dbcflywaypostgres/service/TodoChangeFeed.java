@@ -0,0 +1,145 @@
+package com.mahmud.r2dbcflywaypostgres.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoChange;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans out the notifications of the {@code todos_notify_change} trigger to any number of subscribers.
+ * <p>
+ * A single connection, opened outside the pool, listens on the channel and reconnects with backoff
+ * when it is lost. Changes made while it is reconnecting are not delivered.
+ * Every subscriber gets its own buffer of {@code buffer-size} changes. When a slow subscriber fills
+ * it, the oldest changes are dropped ({@code overflow: drop}) or the subscription fails and the
+ * stream closes ({@code overflow: close}). Other subscribers are not held up either way.
+ * <p>
+ * The current subscribers and the changes dropped for slow ones are published as the
+ * {@code todos.changes.subscribers} gauge and the {@code todos.changes.dropped} counter.
+ */
+@Component
+public class TodoChangeFeed implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TodoChangeFeed.class);
+
+    static final String CHANNEL = "todo_changes";
+
+    private final ConnectionFactory listenerConnectionFactory;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final boolean closeOnOverflow;
+
+    // Best effort: a subscriber without demand misses the change instead of blocking the others.
+    // The per-subscriber buffer in changes() always has demand, so in practice it decides what is dropped.
+    private final Sinks.Many<TodoChange> sink = Sinks.many().multicast().directBestEffort();
+    private final LongAdder dropped = new LongAdder();
+    private volatile Disposable listener;
+
+    public TodoChangeFeed(R2dbcProperties r2dbcProperties,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.todos.changes.buffer-size:256}") int bufferSize,
+                          @Value("${app.todos.changes.overflow:drop}") String overflow) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(r2dbcProperties.getUrl()).mutate();
+        if (r2dbcProperties.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, r2dbcProperties.getUsername());
+        }
+        if (r2dbcProperties.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, r2dbcProperties.getPassword());
+        }
+        this.listenerConnectionFactory = ConnectionFactories.get(options.build());
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.closeOnOverflow = "close".equalsIgnoreCase(overflow);
+        Gauge.builder("todos.changes.subscribers", this, TodoChangeFeed::subscriberCount)
+                .description("Subscribers of the todo change feed")
+                .register(meterRegistry);
+        FunctionCounter.builder("todos.changes.dropped", this, TodoChangeFeed::droppedCount)
+                .description("Changes dropped because a subscriber fell behind")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        listener = Flux.usingWhen(listenerConnectionFactory.create(), this::listen, connection -> connection.close())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .transientErrors(true) // Start over at one second after a connection that worked.
+                        .doBeforeRetry(signal -> log.warn("Todo change listener lost its connection, reconnecting",
+                                signal.failure())))
+                .subscribe(this::publish);
+    }
+
+    private Flux<Notification> listen(io.r2dbc.spi.Connection connection) {
+        PostgresqlConnection postgres = (PostgresqlConnection) connection;
+        return postgres.createStatement("LISTEN " + CHANNEL)
+                .execute()
+                .flatMap(PostgresqlResult::getRowsUpdated)
+                .thenMany(Flux.defer(postgres::getNotifications))
+                .doOnSubscribe(subscription -> log.info("Listening for todo changes on {}", CHANNEL));
+    }
+
+    void publish(Notification notification) {
+        TodoChange change;
+        try {
+            change = objectMapper.readValue(notification.getParameter(), TodoChange.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed todo change notification {}", notification.getParameter(), e);
+            return;
+        }
+        sink.tryEmitNext(change); // Only the listener emits, so this cannot fail on concurrent access.
+    }
+
+    /**
+     * A live stream of changes, starting with the next one.
+     */
+    public Flux<TodoChange> changes() {
+        Flux<TodoChange> changes = sink.asFlux();
+        if (closeOnOverflow) {
+            return changes.onBackpressureBuffer(bufferSize, change -> dropped.increment());
+        }
+        return changes.onBackpressureBuffer(bufferSize, change -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    public int subscriberCount() {
+        return sink.currentSubscriberCount();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void destroy() {
+        Disposable running = listener;
+        if (running != null) {
+            running.dispose();
+        }
+        sink.tryEmitComplete();
+    }
+}
@@ -0,0 +1,162 @@
+package com.mahmud.r2dbcflywaypostgres.service;
+
+import com.mahmud.r2dbcflywaypostgres.domain.TodoCopyLayout;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoImportResult;
+import com.mahmud.r2dbcflywaypostgres.repository.TodoRepository;
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Bulk transfer of todos in Postgres' CSV format.
+ * <p>
+ * Imports stream the request body into {@code COPY ... FROM STDIN} without buffering it. The driver
+ * has no {@code COPY ... TO STDOUT}, so exports read the table with a fetch size instead and encode
+ * the rows as CSV as the client consumes them. As in Postgres' CSV format, an unquoted empty field
+ * is NULL and {@code ""} is an empty string.
+ * <p>
+ * An export is in the {@link TodoCopyLayout#EXPORT} layout, with {@code created_at} including its
+ * offset, so it can be imported again as is.
+ */
+@Service
+public class TodoCopyService {
+
+    private static final String DATA_EXCEPTION_CLASS = "22";
+    private static final String NOT_NULL_VIOLATION = "23502";
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final String CHECK_VIOLATION = "23514";
+
+    static final String EXPORT_HEADER = TodoCopyLayout.EXPORT.columns().replace(" ", "") + "\n";
+
+    private final TodoRepository todoRepository;
+    private final DatabaseClient databaseClient;
+    private final TodoStreamLimiter streamLimiter;
+    private final int exportFetchSize;
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    public TodoCopyService(TodoRepository todoRepository,
+                           DatabaseClient databaseClient,
+                           TodoStreamLimiter streamLimiter,
+                           @Value("${app.todos.stream.fetch-size:256}") int exportFetchSize) {
+        this.todoRepository = todoRepository;
+        this.databaseClient = databaseClient;
+        this.streamLimiter = streamLimiter;
+        this.exportFetchSize = exportFetchSize;
+    }
+
+    /**
+     * Copies {@code data} into the todos table in one transaction.
+     * The per-row change notifications are suppressed; a single {@code import} change is sent on commit.
+     * Rows in the {@link TodoCopyLayout#EXPORT} layout keep their IDs, so they must not exist yet.
+     * A malformed body fails with 400, an ID that exists already with 409; nothing is imported then.
+     * @param binary Whether {@code data} is in the binary COPY format rather than CSV with a header line.
+     */
+    @Transactional
+    public Mono<TodoImportResult> importTodos(Flux<DataBuffer> data, boolean binary, TodoCopyLayout layout) {
+        long start = System.currentTimeMillis();
+        return databaseClient.sql("SELECT set_config('app.skip_todo_notify', 'on', true)").then()
+                .then(todoRepository.copyIn(data.map(NettyDataBufferFactory::toByteBuf), binary, layout))
+                .flatMap(imported -> layout == TodoCopyLayout.EXPORT
+                        ? todoRepository.syncIdSequence().thenReturn(imported)
+                        : Mono.just(imported))
+                .flatMap(imported -> databaseClient
+                        .sql("SELECT pg_notify('" + TodoChangeFeed.CHANNEL + "', '{\"op\":\"import\"}')")
+                        .then()
+                        .thenReturn(new TodoImportResult(imported, System.currentTimeMillis() - start)))
+                .onErrorMap(TodoCopyService::clientError);
+    }
+
+    // COPY reports a malformed body with a data exception, IDs that exist already with a unique violation.
+    private static Throwable clientError(Throwable error) {
+        Throwable cause = error;
+        while (cause != null && !(cause instanceof R2dbcException)) {
+            cause = cause.getCause();
+        }
+        String sqlState = cause != null ? ((R2dbcException) cause).getSqlState() : null;
+        if (sqlState == null) {
+            return error;
+        }
+        if (sqlState.equals(UNIQUE_VIOLATION)) {
+            return new ResponseStatusException(HttpStatus.CONFLICT, cause.getMessage(), error);
+        }
+        if (sqlState.startsWith(DATA_EXCEPTION_CLASS) || sqlState.equals(NOT_NULL_VIOLATION) || sqlState.equals(CHECK_VIOLATION)) {
+            return new ResponseStatusException(HttpStatus.BAD_REQUEST, cause.getMessage(), error);
+        }
+        return error;
+    }
+
+    /**
+     * Streams all todos as CSV with a header line, in ID order. Bounded by {@link TodoStreamLimiter}.
+     */
+    public Flux<DataBuffer> exportTodos() {
+        // Read here rather than as Todo, whose LocalDateTime would drop the offset of created_at.
+        Flux<String> lines = databaseClient.sql("SELECT " + TodoCopyLayout.EXPORT.columns() + " FROM todos ORDER BY id")
+                .filter(statement -> statement.fetchSize(exportFetchSize))
+                .map((row, metadata) -> encode(row))
+                .all()
+                .limitRate(exportFetchSize);
+        Flux<DataBuffer> rows = streamLimiter.limit(lines)
+                .buffer(exportFetchSize)
+                .map(this::join);
+        return Flux.concat(Mono.fromSupplier(() -> bufferFactory.wrap(EXPORT_HEADER.getBytes(StandardCharsets.UTF_8))), rows);
+    }
+
+    private static String encode(Row row) {
+        StringBuilder csv = new StringBuilder(64);
+        csv.append(row.get("id", Integer.class)).append(',');
+        appendText(csv, row.get("title", String.class));
+        csv.append(',');
+        appendText(csv, row.get("description", String.class));
+        csv.append(',');
+        appendValue(csv, row.get("completed", Boolean.class));
+        csv.append(',');
+        appendValue(csv, row.get("created_at", OffsetDateTime.class));
+        csv.append(',');
+        appendValue(csv, row.get("priority", Integer.class));
+        csv.append(',');
+        appendValue(csv, row.get("version", Long.class));
+        csv.append('\n');
+        return csv.toString();
+    }
+
+    // One buffer per fetch keeps the number of writes low without holding more than a fetch in memory.
+    private DataBuffer join(List<String> lines) {
+        return bufferFactory.wrap(String.join("", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendValue(StringBuilder csv, Object value) {
+        if (value != null) {
+            csv.append(value);
+        }
+    }
+
+    private static void appendText(StringBuilder csv, String value) {
+        if (value == null) {
+            return;
+        }
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        csv.append('"');
+    }
+}
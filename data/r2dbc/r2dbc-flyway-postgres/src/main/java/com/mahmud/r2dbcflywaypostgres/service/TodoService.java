@@ -1,49 +1,214 @@
 package com.mahmud.r2dbcflywaypostgres.service;
 
 import com.mahmud.r2dbcflywaypostgres.domain.Todo;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoFilter;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoPage;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoPatch;
 import com.mahmud.r2dbcflywaypostgres.repository.TodoRepository;
+import io.r2dbc.spi.Parameter;
+import io.r2dbc.spi.Parameters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Service
 public class TodoService {
+    private static final Set<String> SORTABLE_FIELDS = Set.of("priority", "createdAt");
+
     private final TodoRepository todoRepository;
+    private final TodoCache todoCache;
+    private final TodoStreamLimiter streamLimiter;
+    private final TransactionalOperator transactionalOperator;
+    private final int maxPageSize;
+    private final int streamFetchSize;
+    private final int batchChunkSize;
 
-    public TodoService(TodoRepository todoRepository) {
+    public TodoService(TodoRepository todoRepository,
+                       TodoCache todoCache,
+                       TodoStreamLimiter streamLimiter,
+                       TransactionalOperator transactionalOperator,
+                       @Value("${app.todos.page.max-size:500}") int maxPageSize,
+                       @Value("${app.todos.stream.fetch-size:256}") int streamFetchSize,
+                       @Value("${app.todos.batch.chunk-size:500}") int batchChunkSize) {
         this.todoRepository = todoRepository;
+        this.todoCache = todoCache;
+        this.streamLimiter = streamLimiter;
+        this.transactionalOperator = transactionalOperator;
+        this.maxPageSize = maxPageSize;
+        this.streamFetchSize = streamFetchSize;
+        this.batchChunkSize = batchChunkSize;
     }
 
     public Flux<Todo> getAllTodos() {
         return todoRepository.findAll();
     }
 
+    /**
+     * Returns up to {@code size} todos with an ID above {@code cursor}, in ID order.
+     * @param cursor The {@code nextCursor} of the previous page, or null for the first page.
+     */
+    public Mono<TodoPage> getTodoPage(Long cursor, int size) {
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        return todoRepository.findPageAfter(cursor != null ? cursor : 0, limit)
+                .collectList()
+                .map(todos -> new TodoPage(todos,
+                        todos.size() < limit ? null : todos.get(todos.size() - 1).getId()));
+    }
+
+    /**
+     * Streams all todos with an ID above {@code cursor} in ID order, reading from the database only
+     * as fast as the subscriber consumes them. Bounded by {@link TodoStreamLimiter}.
+     */
+    public Flux<Todo> streamTodos(Long cursor) {
+        return streamLimiter.limit(todoRepository.streamAfter(cursor != null ? cursor : 0, streamFetchSize));
+    }
+
     public Flux<Todo> getTodosByCompleted(boolean completed) {
         return todoRepository.findByCompleted(completed);
     }
 
+    /**
+     * Returns up to {@code size} todos matching {@code filter}.
+     * @param sort {@code priority} or {@code createdAt}; ties are broken by ID in the same direction.
+     */
+    public Flux<Todo> searchTodos(TodoFilter filter, String sort, Sort.Direction direction, int size) {
+        if (!SORTABLE_FIELDS.contains(sort)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot sort by " + sort));
+        }
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        return todoRepository.search(filter, Sort.by(direction, sort, "id"), limit);
+    }
+
     public Mono<Todo> getTodoById(Long id) {
-        return todoRepository.findById(id)
+        return todoCache.get(id)
                 .switchIfEmpty(Mono.error(new RuntimeException("Todo not found")));
     }
 
+    /**
+     * Inserts a new todo. An ID or version in the request is ignored: with either set, the save would
+     * be taken for an update of an existing row.
+     */
     public Mono<Todo> createTodo(Todo todo) {
+        todo.setId(null);
+        todo.setVersion(null);
         return todoRepository.save(todo);
     }
 
+    /**
+     * Inserts the todos in chunks of {@code app.todos.batch.chunk-size}, one statement per chunk.
+     * Runs in one transaction, so either all todos are created or none.
+     */
+    public Flux<Todo> createTodos(Flux<Todo> todos) {
+        return transactionalOperator.transactional(todos.buffer(batchChunkSize)
+                .concatMap(todoRepository::insertAll));
+    }
+
+    /**
+     * Updates the todos in chunks of {@code app.todos.batch.chunk-size}, one statement per chunk.
+     * Runs in one transaction. A todo that carries a version is only updated while the row still has
+     * that version. If any todo does not exist, nothing is updated and the batch fails with 404;
+     * if any was modified since, with 409. The updated todos are emitted once the transaction commits.
+     */
+    public Flux<Todo> updateTodos(Flux<Todo> todos) {
+        Flux<Todo> updates = todos.buffer(batchChunkSize)
+                .concatMap(chunk -> {
+                    if (chunk.stream().anyMatch(todo -> todo.getId() == null)) {
+                        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every todo in a batch update needs an id"));
+                    }
+                    // Postgres updates a row once per statement, whichever of its duplicates comes first.
+                    if (chunk.stream().map(Todo::getId).distinct().count() < chunk.size()) {
+                        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch update lists the same todo twice"));
+                    }
+                    return todoRepository.updateAll(chunk)
+                            .collectList()
+                            .flatMapMany(updated -> updated.size() == chunk.size()
+                                    ? Flux.fromIterable(updated)
+                                    : skipped(chunk, updated));
+                });
+        // The cache is invalidated only after the commit; a load in between would read the old rows again.
+        return transactionalOperator.transactional(updates.collectList())
+                .flatMapMany(updated -> {
+                    updated.forEach(todo -> todoCache.invalidate(todo.getId()));
+                    return Flux.fromIterable(updated);
+                });
+    }
+
+    // Fails the batch, rolling back the chunks before, with the IDs the update left out.
+    private Flux<Todo> skipped(List<Todo> chunk, List<Todo> updated) {
+        Set<Long> updatedIds = updated.stream().map(Todo::getId).collect(Collectors.toSet());
+        List<Long> skippedIds = chunk.stream().map(Todo::getId).filter(id -> !updatedIds.contains(id)).toList();
+        return todoRepository.findAllById(skippedIds)
+                .map(Todo::getId)
+                .collect(Collectors.toSet())
+                .flatMapMany(existing -> {
+                    List<Long> missing = skippedIds.stream().filter(id -> !existing.contains(id)).toList();
+                    return Flux.error(missing.isEmpty()
+                            ? new ResponseStatusException(HttpStatus.CONFLICT, "Todos were modified concurrently: " + skippedIds)
+                            : new ResponseStatusException(HttpStatus.NOT_FOUND, "Todos not found: " + missing));
+                });
+    }
+
+    /**
+     * Replaces title, description, completed and priority in one statement.
+     * If the todo carries a version, the update only applies while the row still has that version.
+     */
     public Mono<Todo> updateTodo(Long id, Todo todo) {
-        return todoRepository.findById(id)
-                .flatMap(existingTodo -> {
-                    existingTodo.setTitle(todo.getTitle());
-                    existingTodo.setDescription(todo.getDescription());
-                    existingTodo.setCompleted(todo.getCompleted());
-                    existingTodo.setPriority(todo.getPriority());
-                    return todoRepository.save(existingTodo);
-                })
-                .switchIfEmpty(Mono.error(new RuntimeException("Todo not found")));
+        Map<String, Object> columns = new LinkedHashMap<>();
+        columns.put("title", parameter(todo.getTitle(), String.class));
+        columns.put("description", parameter(todo.getDescription(), String.class));
+        columns.put("completed", parameter(todo.getCompleted(), Boolean.class));
+        columns.put("priority", parameter(todo.getPriority(), Integer.class));
+        return updateColumns(id, todo.getVersion(), columns);
+    }
+
+    // A null must be bound with its type, so that Postgres can tell which type the parameter has.
+    private static Parameter parameter(Object value, Class<?> type) {
+        return value != null ? Parameters.in(value) : Parameters.in(type);
+    }
+
+    /**
+     * Updates only the fields present in {@code patch}, in one statement.
+     */
+    public Mono<Todo> patchTodo(Long id, TodoPatch patch) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (patch.title() != null) {
+            columns.put("title", patch.title());
+        }
+        if (patch.description() != null) {
+            columns.put("description", patch.description());
+        }
+        if (patch.completed() != null) {
+            columns.put("completed", patch.completed());
+        }
+        if (patch.priority() != null) {
+            columns.put("priority", patch.priority());
+        }
+        return updateColumns(id, patch.version(), columns);
+    }
+
+    // Only a failed update pays for the second query that tells a missing todo from a stale version.
+    private Mono<Todo> updateColumns(Long id, Long expectedVersion, Map<String, Object> columns) {
+        return todoRepository.updateColumns(id, expectedVersion, columns)
+                .doOnNext(todo -> todoCache.invalidate(id))
+                .switchIfEmpty(Mono.defer(() -> todoRepository.existsById(id)
+                        .flatMap(exists -> Mono.error(exists
+                                ? new ResponseStatusException(HttpStatus.CONFLICT, "Todo was modified concurrently")
+                                : new ResponseStatusException(HttpStatus.NOT_FOUND, "Todo not found")))));
     }
 
     public Mono<Void> deleteTodo(Long id) {
-        return todoRepository.deleteById(id);
+        return todoRepository.deleteById(id)
+                .doOnSuccess(done -> todoCache.invalidate(id));
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.mahmud.r2dbcflywaypostgres.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the todo streams (listings and CSV exports) that read from the database at the same time.
+ * <p>
+ * A stream holds a pooled connection and an open portal for as long as its client keeps reading,
+ * so a few slow clients could otherwise take the whole pool. Streams beyond {@code maxConcurrent}
+ * are refused with 503. A stream that has not passed on a row for {@code idleTimeout}, usually
+ * because its client stopped reading, is cancelled, which closes the portal and returns the connection.
+ */
+@Component
+public class TodoStreamLimiter {
+
+    private final Semaphore permits;
+    private final Duration idleTimeout;
+
+    public TodoStreamLimiter(@Value("${app.todos.stream.max-concurrent:4}") int maxConcurrent,
+                             @Value("${app.todos.stream.idle-timeout:30s}") Duration idleTimeout) {
+        this.permits = new Semaphore(maxConcurrent);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Takes a permit when {@code stream} is subscribed to and returns it when the stream ends,
+     * fails or is cancelled.
+     */
+    public <T> Flux<T> limit(Flux<T> stream) {
+        return Flux.defer(() -> {
+            if (!permits.tryAcquire()) {
+                return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many todo streams running"));
+            }
+            return stream.timeout(idleTimeout)
+                    .doFinally(signal -> permits.release());
+        });
+    }
+}
@@ -0,0 +1,17 @@
+-- Built concurrently so that existing tables stay writable. Flyway runs these outside a transaction,
+-- and spring.flyway.postgresql.transactional-lock must be false, or the build waits on Flyway's own lock.
+-- A build that fails leaves an INVALID index behind, which IF NOT EXISTS would then keep. Before
+-- re-running this migration, drop any leftover listed by
+--   SELECT indexrelid::regclass FROM pg_index WHERE NOT indisvalid;
+-- with DROP INDEX CONCURRENTLY.
+-- The trailing id lets each index also serve the id tiebreaker of the sort.
+
+-- findByCompleted and filters on completed, sorted or ranged by priority.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_todos_completed_priority ON todos (completed, priority, id);
+
+-- Filters on completed, sorted or windowed by created_at.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_todos_completed_created_at ON todos (completed, created_at, id);
+
+-- The same sorts and ranges without a completed filter.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_todos_priority ON todos (priority, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_todos_created_at ON todos (created_at, id);
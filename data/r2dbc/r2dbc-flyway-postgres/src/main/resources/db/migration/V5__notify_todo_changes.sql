@@ -0,0 +1,22 @@
+-- Announces every row change on the todo_changes channel. Only the key and version are sent:
+-- NOTIFY payloads are limited to 8000 bytes, and listeners can read the row if they need it.
+CREATE OR REPLACE FUNCTION notify_todo_change() RETURNS trigger AS $$
+DECLARE
+    changed todos%ROWTYPE;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        changed := OLD;
+    ELSE
+        changed := NEW;
+    END IF;
+    PERFORM pg_notify('todo_changes', json_build_object(
+            'op', lower(TG_OP),
+            'id', changed.id,
+            'version', changed.version)::text);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER todos_notify_change
+    AFTER INSERT OR UPDATE OR DELETE ON todos
+    FOR EACH ROW EXECUTE FUNCTION notify_todo_change();
@@ -0,0 +1,21 @@
+-- Bulk imports set app.skip_todo_notify for their transaction and send a single notification
+-- instead of one per row.
+CREATE OR REPLACE FUNCTION notify_todo_change() RETURNS trigger AS $$
+DECLARE
+    changed todos%ROWTYPE;
+BEGIN
+    IF current_setting('app.skip_todo_notify', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP = 'DELETE' THEN
+        changed := OLD;
+    ELSE
+        changed := NEW;
+    END IF;
+    PERFORM pg_notify('todo_changes', json_build_object(
+            'op', lower(TG_OP),
+            'id', changed.id,
+            'version', changed.version)::text);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,198 @@
+package com.mahmud.r2dbcflywaypostgres.repository;
+
+import com.mahmud.r2dbcflywaypostgres.domain.TodoFilter;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.r2dbc.connection.SingleConnectionFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.ReflectionUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the migrations against a real Postgres and checks that each query shape of
+ * {@link TodoRepositoryCustom#search} is answered by the V4 index meant for it, by EXPLAINing
+ * the statement the repository actually sends.
+ */
+@DataR2dbcTest
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TodoQueryIndexesTests {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://" + postgres.getHost() + ":"
+                + postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + postgres.getDatabaseName());
+        registry.add("spring.r2dbc.username", postgres::getUsername);
+        registry.add("spring.r2dbc.password", postgres::getPassword);
+        registry.add("spring.flyway.url", postgres::getJdbcUrl);
+        registry.add("spring.flyway.user", postgres::getUsername);
+        registry.add("spring.flyway.password", postgres::getPassword);
+    }
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    @Autowired
+    R2dbcConverter converter;
+
+    @BeforeAll
+    void insertTodos() {
+        execute("SELECT set_config('app.skip_todo_notify', 'on', false)",
+                """
+                INSERT INTO todos (title, completed, priority, created_at)
+                SELECT 'todo ' || n, n % 2 = 0, n % 10, now() - n * interval '1 minute'
+                FROM generate_series(1, 20000) AS n
+                """,
+                "ANALYZE todos");
+    }
+
+    @Test
+    void concurrentBuildsLeftNoInvalidIndex() {
+        List<String> invalid = query("SELECT indexrelid::regclass::text FROM pg_index WHERE NOT indisvalid");
+
+        assertThat(invalid).isEmpty();
+    }
+
+    static Stream<Arguments> searches() {
+        LocalDateTime dayAgo = LocalDateTime.now().minusDays(1);
+        return Stream.of(
+                Arguments.of(new TodoFilter(true, null, null, null, null), "priority", Sort.Direction.DESC,
+                        "idx_todos_completed_priority"),
+                Arguments.of(new TodoFilter(false, null, null, dayAgo, null), "createdAt", Sort.Direction.DESC,
+                        "idx_todos_completed_created_at"),
+                Arguments.of(new TodoFilter(null, 2, 4, null, null), "priority", Sort.Direction.ASC,
+                        "idx_todos_priority"),
+                Arguments.of(new TodoFilter(null, null, null, null, null), "createdAt", Sort.Direction.DESC,
+                        "idx_todos_created_at"),
+                Arguments.of(new TodoFilter(null, null, null, null, dayAgo), "createdAt", Sort.Direction.ASC,
+                        "idx_todos_created_at"));
+    }
+
+    // Runs the real search, sorted the way TodoService sorts it, then EXPLAINs the statement it sent.
+    @ParameterizedTest
+    @MethodSource("searches")
+    void searchUsesItsIndex(TodoFilter filter, String sort, Sort.Direction direction, String index) {
+        List<String> plan = Flux.usingWhen(connectionFactory.create(),
+                        connection -> {
+                            RecordingConnection recording = new RecordingConnection(connection);
+                            DatabaseClient databaseClient = DatabaseClient.create(
+                                    new SingleConnectionFactory(recording.proxy(), connectionFactory.getMetadata(), true));
+                            TodoRepositoryCustom repository = new TodoRepositoryCustomImpl(
+                                    new R2dbcEntityTemplate(databaseClient, PostgresDialect.INSTANCE, converter));
+                            return repository.search(filter, Sort.by(direction, sort, "id"), 50)
+                                    .thenMany(Flux.defer(() -> recording.explainLast(connection)));
+                        },
+                        Connection::close)
+                .collectList()
+                .block();
+
+        assertThat(String.join("\n", plan)).contains(index);
+    }
+
+    private List<String> query(String sql) {
+        return Flux.usingWhen(connectionFactory.create(),
+                        connection -> Flux.from(connection.createStatement(sql).execute())
+                                .flatMap(result -> result.map((row, metadata) -> row.get(0, String.class))),
+                        Connection::close)
+                .collectList()
+                .block();
+    }
+
+    private void execute(String... statements) {
+        Flux.usingWhen(connectionFactory.create(),
+                        connection -> Flux.fromArray(statements)
+                                .concatMap(sql -> Flux.from(connection.createStatement(sql).execute())
+                                        .flatMap(Result::getRowsUpdated)),
+                        Connection::close)
+                .then()
+                .block();
+    }
+
+    /**
+     * Passes everything through to {@code target}, remembering the SQL and the bind calls of the
+     * last statement created, so that the same statement can be prefixed with EXPLAIN and re-run.
+     */
+    private static class RecordingConnection {
+
+        private final Connection target;
+        private String sql;
+        private final List<Object[]> bindings = new ArrayList<>();
+
+        RecordingConnection(Connection target) {
+            this.target = target;
+        }
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(method, target, args);
+                        if (method.getName().equals("createStatement")) {
+                            sql = (String) args[0];
+                            bindings.clear();
+                            return recording((Statement) result);
+                        }
+                        return result;
+                    });
+        }
+
+        Flux<String> explainLast(Connection connection) {
+            Statement explain = connection.createStatement("EXPLAIN " + sql);
+            for (Object[] binding : bindings) {
+                ReflectionUtils.invokeMethod((Method) binding[0], explain, (Object[]) binding[1]);
+            }
+            return Flux.from(explain.execute())
+                    .flatMap(result -> result.map((row, metadata) -> row.get(0, String.class)));
+        }
+
+        private Statement recording(Statement statement) {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("bind")) {
+                            bindings.add(new Object[]{method, args});
+                        }
+                        Object result = invoke(method, statement, args);
+                        return result == statement ? proxy : result;
+                    });
+        }
+
+        private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.mahmud.r2dbcflywaypostgres.service;
+
+import com.mahmud.r2dbcflywaypostgres.domain.Todo;
+import com.mahmud.r2dbcflywaypostgres.repository.TodoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent readers of one todo against a mocked repository, counting the queries it runs.
+ */
+class TodoCacheTests {
+
+    private static final int READERS = 64;
+
+    private final TodoRepository todoRepository = mock(TodoRepository.class);
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    void concurrentMissesOfOneTodoRunOneQuery() throws Exception {
+        TodoCache cache = cache(100, Duration.ofMinutes(5));
+        returnTodos(Duration.ofMillis(100)); // Query latency keeps the other readers waiting.
+
+        assertThat(readConcurrently(cache, 42L)).containsExactly(42L);
+        assertThat(queries).hasValue(1);
+
+        // Once the entry is invalidated, the next wave of readers again triggers a single query.
+        cache.invalidate(42L);
+        assertThat(readConcurrently(cache, 42L)).containsExactly(42L);
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void hitsDoNotQueryAgain() {
+        TodoCache cache = cache(100, Duration.ofMinutes(5));
+        returnTodos(Duration.ZERO);
+
+        cache.get(42L).block();
+        cache.get(42L).block();
+
+        assertThat(queries).hasValue(1);
+    }
+
+    @Test
+    void missingTodoIsNotCached() {
+        TodoCache cache = cache(100, Duration.ofMinutes(5));
+        when(todoRepository.findById(anyLong())).thenReturn(Mono.fromCallable(() -> {
+            queries.incrementAndGet();
+            return null;
+        }));
+
+        assertThat(cache.get(42L).block()).isNull();
+        assertThat(cache.get(42L).block()).isNull();
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void entryExpiresAfterTheTtl() throws InterruptedException {
+        TodoCache cache = cache(100, Duration.ofMillis(200));
+        returnTodos(Duration.ZERO);
+
+        cache.get(42L).block();
+        Thread.sleep(400);
+        cache.get(42L).block();
+
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void sizeStaysWithinTheMaximum() {
+        TodoCache cache = cache(10, Duration.ofMinutes(5));
+        returnTodos(Duration.ZERO);
+
+        for (long id = 1; id <= 100; id++) {
+            cache.get(id).block();
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+    }
+
+    private TodoCache cache(long maximumSize, Duration ttl) {
+        return new TodoCache(todoRepository, mock(TodoChangeFeed.class), new SimpleMeterRegistry(), maximumSize, ttl);
+    }
+
+    private void returnTodos(Duration latency) {
+        when(todoRepository.findById(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return Mono.fromCallable(() -> {
+                queries.incrementAndGet();
+                return todo(id);
+            }).delayElement(latency);
+        });
+    }
+
+    private static List<Long> readConcurrently(TodoCache cache, Long id) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Todo>> results = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get(id).block();
+                }));
+            }
+            start.countDown();
+            List<Long> ids = new ArrayList<>();
+            for (Future<Todo> result : results) {
+                Long loaded = result.get().getId();
+                if (!ids.contains(loaded)) {
+                    ids.add(loaded);
+                }
+            }
+            return ids;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Todo todo(Long id) {
+        Todo todo = new Todo();
+        todo.setId(id);
+        todo.setTitle("todo " + id);
+        return todo;
+    }
+}
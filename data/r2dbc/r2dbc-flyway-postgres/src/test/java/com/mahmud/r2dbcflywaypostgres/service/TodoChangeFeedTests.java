@@ -0,0 +1,91 @@
+package com.mahmud.r2dbcflywaypostgres.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoChange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.postgresql.api.Notification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A subscriber that requests nothing while changes arrive, against a buffer of two changes.
+ * The listener is never started; changes are published as the notifications it would receive.
+ */
+class TodoChangeFeedTests {
+
+    private static final int BUFFER_SIZE = 2;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TodoChangeFeed feed;
+
+    @AfterEach
+    void close() {
+        feed.destroy();
+    }
+
+    @Test
+    void slowSubscriberLosesTheOldestChanges() {
+        feed = feed("drop");
+
+        StepVerifier.create(feed.changes(), 0)
+                .then(() -> {
+                    assertThat(meterRegistry.get("todos.changes.subscribers").gauge().value()).isEqualTo(1);
+                    publishUpdates(5);
+                })
+                .thenRequest(BUFFER_SIZE)
+                .expectNext(new TodoChange("update", 4L, 1L), new TodoChange("update", 5L, 1L))
+                .thenCancel()
+                .verify();
+
+        assertThat(feed.droppedCount()).isEqualTo(3);
+        assertThat(meterRegistry.get("todos.changes.dropped").functionCounter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void slowSubscriberIsClosedOnOverflow() {
+        feed = feed("close");
+
+        StepVerifier.create(feed.changes(), 0)
+                .then(() -> publishUpdates(3))
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(change -> true)
+                .verifyErrorMatches(Exceptions::isOverflow);
+
+        assertThat(feed.droppedCount()).isEqualTo(1);
+        assertThat(feed.subscriberCount()).isZero();
+    }
+
+    @Test
+    void fastSubscriberGetsEveryChange() {
+        feed = feed("close");
+
+        StepVerifier.create(feed.changes())
+                .then(() -> publishUpdates(5))
+                .expectNextCount(5)
+                .thenCancel()
+                .verify();
+
+        assertThat(feed.droppedCount()).isZero();
+    }
+
+    private TodoChangeFeed feed(String overflow) {
+        R2dbcProperties properties = new R2dbcProperties();
+        properties.setUrl("r2dbc:postgresql://localhost:5432/todo_db");
+        return new TodoChangeFeed(properties, new ObjectMapper(), meterRegistry, BUFFER_SIZE, overflow);
+    }
+
+    private void publishUpdates(int count) {
+        for (long id = 1; id <= count; id++) {
+            Notification notification = mock(Notification.class);
+            when(notification.getParameter()).thenReturn("{\"op\":\"update\",\"id\":" + id + ",\"version\":1}");
+            feed.publish(notification);
+        }
+    }
+}
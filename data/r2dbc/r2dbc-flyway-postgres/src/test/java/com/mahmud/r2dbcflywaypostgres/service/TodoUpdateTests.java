@@ -0,0 +1,140 @@
+package com.mahmud.r2dbcflywaypostgres.service;
+
+import com.mahmud.r2dbcflywaypostgres.domain.Todo;
+import com.mahmud.r2dbcflywaypostgres.domain.TodoPatch;
+import com.mahmud.r2dbcflywaypostgres.repository.TodoRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the single-row updates of {@link TodoService} against a real Postgres: the conditional
+ * UPDATE, the 404/409 distinction after it matched nothing, and the binding of typed nulls.
+ */
+@DataR2dbcTest
+@Testcontainers(disabledWithoutDocker = true)
+class TodoUpdateTests {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://" + postgres.getHost() + ":"
+                + postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + postgres.getDatabaseName());
+        registry.add("spring.r2dbc.username", postgres::getUsername);
+        registry.add("spring.r2dbc.password", postgres::getPassword);
+        registry.add("spring.flyway.url", postgres::getJdbcUrl);
+        registry.add("spring.flyway.user", postgres::getUsername);
+        registry.add("spring.flyway.password", postgres::getPassword);
+    }
+
+    @Autowired
+    TodoRepository todoRepository;
+
+    private TodoService todoService() {
+        return new TodoService(todoRepository, mock(TodoCache.class), mock(TodoStreamLimiter.class),
+                mock(TransactionalOperator.class), 500, 256, 500);
+    }
+
+    @Test
+    void updateWithAStaleVersionFailsWith409() {
+        Todo saved = save("Write tests", "For updateColumns", 2);
+        Todo update = todo("Write more tests", null, 3);
+        update.setVersion(saved.getVersion() + 1);
+
+        StepVerifier.create(todoService().updateTodo(saved.getId(), update))
+                .verifyErrorSatisfies(error -> assertStatus(error, HttpStatus.CONFLICT));
+        assertThat(todoRepository.findById(saved.getId()).block().getTitle()).isEqualTo("Write tests");
+    }
+
+    @Test
+    void updateOfAMissingTodoFailsWith404() {
+        Todo update = todo("Nobody", null, 1);
+        update.setVersion(0L);
+
+        StepVerifier.create(todoService().updateTodo(Long.MAX_VALUE, update))
+                .verifyErrorSatisfies(error -> assertStatus(error, HttpStatus.NOT_FOUND));
+        StepVerifier.create(todoService().patchTodo(Long.MAX_VALUE, new TodoPatch(null, null, true, null, null)))
+                .verifyErrorSatisfies(error -> assertStatus(error, HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void updateWithTheCurrentVersionIncrementsIt() {
+        Todo saved = save("Write tests", null, 2);
+        Todo update = todo("Write more tests", "Now", 3);
+        update.setVersion(saved.getVersion());
+
+        Todo updated = todoService().updateTodo(saved.getId(), update).block();
+
+        assertThat(updated.getTitle()).isEqualTo("Write more tests");
+        assertThat(updated.getVersion()).isEqualTo(saved.getVersion() + 1);
+    }
+
+    @Test
+    void updateBindsANullWithItsType() {
+        Todo saved = save("Write tests", "Clear me", 2);
+
+        Todo updated = todoService().updateTodo(saved.getId(), todo("Write tests", null, 2)).block();
+
+        assertThat(updated.getDescription()).isNull();
+        assertThat(todoRepository.findById(saved.getId()).block().getDescription()).isNull();
+    }
+
+    @Test
+    void patchChangesOnlyTheSuppliedColumns() {
+        Todo saved = save("Write tests", "For patchTodo", 4);
+
+        Todo patched = todoService().patchTodo(saved.getId(), new TodoPatch(null, null, true, null, saved.getVersion()))
+                .block();
+
+        assertThat(patched.getCompleted()).isTrue();
+        assertThat(patched.getTitle()).isEqualTo("Write tests");
+        assertThat(patched.getDescription()).isEqualTo("For patchTodo");
+        assertThat(patched.getPriority()).isEqualTo(4);
+        assertThat(patched.getVersion()).isEqualTo(saved.getVersion() + 1);
+        StepVerifier.create(todoService().patchTodo(saved.getId(), new TodoPatch("Again", null, null, null, saved.getVersion())))
+                .verifyErrorSatisfies(error -> assertStatus(error, HttpStatus.CONFLICT));
+    }
+
+    @Test
+    void createIgnoresAnIdAndVersionInTheRequest() {
+        Todo todo = todo("Created", null, 1);
+        todo.setId(Long.MAX_VALUE);
+        todo.setVersion(7L);
+
+        Todo created = todoService().createTodo(todo).block();
+
+        assertThat(created.getId()).isNotEqualTo(Long.MAX_VALUE);
+        assertThat(todoRepository.findById(created.getId()).block().getTitle()).isEqualTo("Created");
+    }
+
+    private Todo save(String title, String description, int priority) {
+        return todoRepository.save(todo(title, description, priority)).block();
+    }
+
+    private static Todo todo(String title, String description, Integer priority) {
+        Todo todo = new Todo();
+        todo.setTitle(title);
+        todo.setDescription(description);
+        todo.setPriority(priority);
+        return todo;
+    }
+
+    private static void assertStatus(Throwable error, HttpStatus status) {
+        assertThat(error).isInstanceOf(ResponseStatusException.class);
+        assertThat(((ResponseStatusException) error).getStatusCode()).isEqualTo(status);
+    }
+}
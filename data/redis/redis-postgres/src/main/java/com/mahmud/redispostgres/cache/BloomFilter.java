@@ -0,0 +1,109 @@
+package com.mahmud.redispostgres.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe Bloom filter over {@code long} keys.
+ * <p>
+ * Sized from the expected number of insertions {@code n} and false-positive rate {@code p}:
+ * {@code m = -n ln(p) / ln(2)^2} bits and {@code k = m/n ln(2)} hash functions. The k bit
+ * positions are derived from two 32-bit halves of one 64-bit mix (Kirsch-Mitzenmacher).
+ */
+public class BloomFilter {
+
+    // Bit positions come from a non-negative int, so more than 2^31 bits would never be used.
+    private static final int MAX_WORDS = 1 << 25;
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final LongAdder insertions = new LongAdder();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) Math.min(MAX_WORDS, (m + 63) / 64));
+        this.bitSize = (long) bits.length() * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    /**
+     * Adds a key. Adding a key that is already present (every bit set) is not counted as an insertion.
+     */
+    public void add(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashFunctions; i++) {
+            changed |= setBit(index(h1 + i * h2));
+        }
+        if (changed) {
+            insertions.increment();
+        }
+    }
+
+    public boolean mightContain(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long index = index(h1 + i * h2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    public long insertions() {
+        return insertions.sum();
+    }
+
+    public long memoryBytes() {
+        return bitSize / 8;
+    }
+
+    /**
+     * The false-positive rate expected at the current number of insertions: {@code (1 - e^(-kn/m))^k}.
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashFunctions * insertions() / bitSize), hashFunctions);
+    }
+
+    private long index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitSize;
+    }
+
+    private boolean setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    // MurmurHash3 64-bit finalizer.
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
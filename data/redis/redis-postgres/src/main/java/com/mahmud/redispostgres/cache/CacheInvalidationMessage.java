@@ -0,0 +1,12 @@
+package com.mahmud.redispostgres.cache;
+
+/**
+ * Published on the invalidation channel whenever a node writes to a two-tier cache.
+ * A {@code null} key means the whole cache was cleared.
+ */
+public record CacheInvalidationMessage(
+        String origin,
+        String cacheName,
+        String key
+) {
+}
@@ -0,0 +1,15 @@
+package com.mahmud.redispostgres.cache;
+
+/**
+ * Size of one cache: its key count and estimated memory in Redis, and its in-process entry count.
+ * The memory is extrapolated from {@code MEMORY USAGE} of up to {@code sampledKeys} keys.
+ */
+public record CacheUsage(
+        String cacheName,
+        long redisKeys,
+        int sampledKeys,
+        long averageEntryBytes,
+        long estimatedRedisBytes,
+        long nearSize
+) {
+}
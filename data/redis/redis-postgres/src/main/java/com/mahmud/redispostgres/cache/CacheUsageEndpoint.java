@@ -0,0 +1,86 @@
+package com.mahmud.redispostgres.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Actuator endpoint ({@code /actuator/cacheusage}) reporting how many keys each cache holds in
+ * Redis and roughly how much memory they take, next to the size of its in-process tier.
+ * <p>
+ * Keys are counted with {@code SCAN} over the {@code <cacheName>::} prefix, so the report does not
+ * block Redis but costs one pass over the keyspace; it is meant for sizing, not for scraping.
+ */
+@Component
+@Endpoint(id = "cacheusage")
+public class CacheUsageEndpoint {
+
+    private final TwoTierCacheManager cacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final int sampleSize;
+
+    public CacheUsageEndpoint(TwoTierCacheManager cacheManager,
+                              StringRedisTemplate redisTemplate,
+                              @Value("${app.cache.usage.sample-size:100}") int sampleSize) {
+        this.cacheManager = cacheManager;
+        this.redisTemplate = redisTemplate;
+        this.sampleSize = sampleSize;
+    }
+
+    @ReadOperation
+    public List<CacheUsage> caches() {
+        return cacheManager.getCacheNames().stream()
+                .map(this::cache)
+                .toList();
+    }
+
+    /**
+     * Returns {@code null}, which Actuator answers with 404, for names that are not configured
+     * caches; looking them up would create and register a new cache.
+     */
+    @ReadOperation
+    public CacheUsage cache(@Selector String name) {
+        if (!cacheManager.getCacheNames().contains(name)) {
+            return null;
+        }
+        long keys = 0;
+        List<String> sample = new ArrayList<>(sampleSize);
+        ScanOptions options = ScanOptions.scanOptions().match(name + "::*").count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (sample.size() < sampleSize) {
+                    sample.add(key);
+                }
+                keys++;
+            }
+        }
+        long sampledBytes = sample.isEmpty() ? 0 : redisTemplate.execute((RedisCallback<Long>) connection -> {
+            long total = 0;
+            for (String key : sample) {
+                total += memoryUsage(connection, key);
+            }
+            return total;
+        });
+        long averageBytes = sample.isEmpty() ? 0 : sampledBytes / sample.size();
+        long nearSize = cacheManager.getCache(name) instanceof TwoTierCache cache ? cache.nearSize() : 0;
+        return new CacheUsage(name, keys, sample.size(), averageBytes, averageBytes * keys, nearSize);
+    }
+
+    private static long memoryUsage(RedisConnection connection, String key) {
+        Object bytes = connection.execute("MEMORY",
+                "USAGE".getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8));
+        return bytes instanceof Long value ? value : 0; // null when the key expired since the scan
+    }
+}
@@ -0,0 +1,273 @@
+package com.mahmud.redispostgres.cache;
+
+import com.mahmud.redispostgres.model.User;
+import com.mahmud.redispostgres.model.UserPage;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary cache value codec for the types this application caches.
+ * <p>
+ * Layout: {@code MAGIC, VERSION, flags, type tag, payload}. {@link User}, {@code List<User>} and
+ * {@link UserPage} are written field by field without type metadata; any other value is written
+ * with the JSON {@code fallback} serializer under the {@code TYPE_JSON} tag. Payloads larger than
+ * {@code compressionThreshold} bytes are deflated when that makes them smaller.
+ * <p>
+ * Values that do not start with {@code MAGIC} are handed to the fallback serializer, so entries
+ * written before the codec was switched on keep decoding until they expire.
+ * {@code MAGIC} can never start a JSON document.
+ * <p>
+ * Reading is independent of {@code writeCompact}: with it off, values are written as plain JSON but
+ * compact values are still decoded. That is what makes a rolling switch safe. First deploy this
+ * version everywhere with {@code app.cache.codec=json}. Once every node runs it, set
+ * {@code app.cache.codec=compact} and roll the nodes again. Going back to JSON works the same way
+ * in reverse order: switch the setting first and remove the codec only after the compact entries expired.
+ */
+public class CompactCacheSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xC1;
+    static final byte VERSION = 1;
+
+    private static final int FLAG_DEFLATED = 1;
+
+    private static final byte TYPE_JSON = 0;
+    private static final byte TYPE_USER = 1;
+    private static final byte TYPE_USER_LIST = 2;
+    private static final byte TYPE_USER_PAGE = 3;
+
+    private static final int HEADER_LENGTH = 4;
+
+    private final RedisSerializer<Object> fallback;
+    private final int compressionThreshold;
+    private final boolean writeCompact;
+
+    public CompactCacheSerializer(RedisSerializer<Object> fallback, int compressionThreshold) {
+        this(fallback, compressionThreshold, true);
+    }
+
+    /**
+     * @param writeCompact Whether to write the compact format; false writes plain JSON.
+     */
+    public CompactCacheSerializer(RedisSerializer<Object> fallback, int compressionThreshold, boolean writeCompact) {
+        this.fallback = fallback;
+        this.compressionThreshold = compressionThreshold;
+        this.writeCompact = writeCompact;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (!writeCompact) {
+            return fallback.serialize(value);
+        }
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(buffer);
+            byte type = writePayload(value, out);
+            out.flush();
+            return frame(type, buffer.toByteArray());
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode cache value", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[1] != VERSION) {
+            throw new SerializationException("Unsupported cache value header");
+        }
+        try {
+            byte[] payload = (bytes[2] & FLAG_DEFLATED) != 0
+                    ? inflate(bytes, HEADER_LENGTH)
+                    : Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length);
+            return readPayload(bytes[3], payload);
+        } catch (IOException | DataFormatException e) {
+            throw new SerializationException("Could not decode cache value", e);
+        }
+    }
+
+    private byte writePayload(Object value, DataOutputStream out) throws IOException {
+        if (value instanceof User user) {
+            writeUser(user, out);
+            return TYPE_USER;
+        }
+        if (value instanceof UserPage page) {
+            writeUsers(page.users(), out);
+            writeNullableLong(page.nextCursor(), out);
+            return TYPE_USER_PAGE;
+        }
+        if (value instanceof List<?> list && list.stream().allMatch(User.class::isInstance)) {
+            @SuppressWarnings("unchecked")
+            List<User> users = (List<User>) list;
+            writeUsers(users, out);
+            return TYPE_USER_LIST;
+        }
+        out.write(fallback.serialize(value));
+        return TYPE_JSON;
+    }
+
+    private Object readPayload(byte type, byte[] payload) throws IOException {
+        if (type == TYPE_JSON) {
+            return fallback.deserialize(payload);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        return switch (type) {
+            case TYPE_USER -> readUser(in);
+            case TYPE_USER_LIST -> readUsers(in);
+            case TYPE_USER_PAGE -> new UserPage(readUsers(in), readNullableLong(in));
+            default -> throw new SerializationException("Unknown cache value type " + type);
+        };
+    }
+
+    private byte[] frame(byte type, byte[] payload) {
+        byte flags = 0;
+        if (payload.length > compressionThreshold) {
+            byte[] deflated = deflate(payload);
+            if (deflated.length < payload.length) {
+                payload = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+        byte[] framed = new byte[HEADER_LENGTH + payload.length];
+        framed[0] = MAGIC;
+        framed[1] = VERSION;
+        framed[2] = flags;
+        framed[3] = type;
+        System.arraycopy(payload, 0, framed, HEADER_LENGTH, payload.length);
+        return framed;
+    }
+
+    private static void writeUsers(List<User> users, DataOutputStream out) throws IOException {
+        writeVarInt(users.size(), out);
+        for (User user : users) {
+            writeUser(user, out);
+        }
+    }
+
+    private static List<User> readUsers(DataInputStream in) throws IOException {
+        int size = readVarInt(in);
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(readUser(in));
+        }
+        return users;
+    }
+
+    private static void writeUser(User user, DataOutputStream out) throws IOException {
+        writeNullableLong(user.getId(), out);
+        writeNullableString(user.getName(), out);
+        writeNullableString(user.getEmail(), out);
+    }
+
+    private static User readUser(DataInputStream in) throws IOException {
+        return new User(readNullableLong(in), readNullableString(in), readNullableString(in));
+    }
+
+    private static void writeNullableLong(Long value, DataOutputStream out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    // Length is stored as varint + 1 so that 0 can mean null.
+    private static void writeNullableString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            writeVarInt(0, out);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length + 1, out);
+        out.write(utf8);
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length - 1];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(int value, DataOutputStream out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, data.length - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(chunk);
+                if (read == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated cache value");
+                }
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.mahmud.redispostgres.cache;
+
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * Settings for probabilistic early refresh ("XFetch") of cache entries.
+ * @param ttl The Redis entry TTL the refresh races against.
+ * @param beta Values above 1 refresh earlier, values below 1 later.
+ * @param executor Runs the background reloads.
+ * @param transactions Wraps each background reload, which runs outside the caller's transaction.
+ */
+public record EarlyRefreshPolicy(
+        Duration ttl,
+        double beta,
+        Executor executor,
+        TransactionOperations transactions
+) {
+}
@@ -0,0 +1,19 @@
+package com.mahmud.redispostgres.cache;
+
+/**
+ * Hit, miss, put and eviction counters of a {@link TwoTierCache}, split by tier. {@code evictions}
+ * counts single keys removed; {@code clears} counts whole-cache clears and invalidations.
+ */
+public record TierStats(
+        String cacheName,
+        boolean nearCacheEnabled,
+        long nearSize,
+        long nearHits,
+        long nearMisses,
+        long redisHits,
+        long redisMisses,
+        long puts,
+        long evictions,
+        long clears
+) {
+}
@@ -0,0 +1,471 @@
+package com.mahmud.redispostgres.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A {@link org.springframework.cache.Cache} that keeps a bounded in-process copy (L1) of the
+ * entries stored in Redis (L2).
+ * <p>
+ * Reads are served from L1 first and fall back to Redis. Every write goes to Redis and is then
+ * announced through {@code invalidationPublisher} so that the other nodes drop their L1 copy.
+ * L1 keys use the same string form as the Redis cache keys, which lets remote invalidations
+ * address them without knowing the original key type.
+ * <p>
+ * {@link #get(Object, Callable)} (used by {@code @Cacheable(sync = true)}) lets only one loader per
+ * key run on this node; concurrent callers wait for its result. With an {@link EarlyRefreshPolicy}
+ * and a {@linkplain #setRefreshLoader refresh loader}, entries loaded on this node may be reloaded
+ * in the background shortly before their Redis TTL runs out. The closer the expiry and the slower
+ * the last load, the likelier a reload. Background reloads call the refresh loader, never the
+ * caller's {@code valueLoader}, which may only be used once and on the caller's thread, and run in
+ * their own transaction from {@link EarlyRefreshPolicy#transactions()}.
+ * <p>
+ * A write or invalidation of a key, local or announced by another node, marks the load of that key
+ * running on this node, if any, as stale; clearing the cache advances {@link #clearEpoch}, which
+ * affects every running load. A stale load does not store its result, and if the change lands while
+ * the result is being stored, the stored value is dropped again. Writes to other keys do not matter.
+ */
+public class TwoTierCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final org.springframework.cache.Cache redis;
+    private final Cache<String, Object> near; // null when the near cache is disabled
+    private final Consumer<String> invalidationPublisher;
+    private final EarlyRefreshPolicy earlyRefresh; // null when early refresh is disabled
+    private volatile Function<Object, Object> refreshLoader; // null when nothing reloads this cache
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, LoadStamp> loadStamps;
+    private final ConcurrentMap<String, LoadTicket> loading = new ConcurrentHashMap<>();
+    private final AtomicLong clearEpoch = new AtomicLong();
+
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder nearMisses = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder clears = new LongAdder();
+    private final LongAdder redisReads = new LongAdder();
+    private final LongAdder redisReadNanos = new LongAdder();
+    private final LongAdder redisWrites = new LongAdder();
+    private final LongAdder redisWriteNanos = new LongAdder();
+    private final LongAdder redisEvicts = new LongAdder();
+    private final LongAdder redisEvictNanos = new LongAdder();
+
+    public TwoTierCache(String name,
+                        org.springframework.cache.Cache redis,
+                        Cache<String, Object> near,
+                        Consumer<String> invalidationPublisher,
+                        EarlyRefreshPolicy earlyRefresh) {
+        super(false);
+        this.name = name;
+        this.redis = redis;
+        this.near = near;
+        this.invalidationPublisher = invalidationPublisher;
+        this.earlyRefresh = earlyRefresh;
+        this.loadStamps = earlyRefresh == null ? null : Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(earlyRefresh.ttl())
+                .build();
+    }
+
+    /**
+     * Sets how a key is reloaded by an early refresh: the loader returns the current value, or null.
+     */
+    void setRefreshLoader(Function<Object, Object> refreshLoader) {
+        this.refreshLoader = refreshLoader;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redis.getNativeCache();
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String nearKey = toNearKey(key);
+        if (near != null) {
+            Object value = near.getIfPresent(nearKey);
+            if (value != null) {
+                nearHits.increment();
+                return value;
+            }
+            nearMisses.increment();
+        }
+
+        ValueWrapper wrapper = redisGet(key);
+        if (wrapper == null || wrapper.get() == null) {
+            redisMisses.increment();
+            return null;
+        }
+        redisHits.increment();
+        Object value = wrapper.get();
+        if (near != null) {
+            near.put(nearKey, value);
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) {
+            maybeRefreshEarly(key);
+            return (T) fromStoreValue(value);
+        }
+
+        String nearKey = toNearKey(key);
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(nearKey, load);
+        if (running != null) {
+            return (T) awaitLoad(running, key, valueLoader);
+        }
+        try {
+            // Another caller may have stored the value between our lookup and winning the race.
+            ValueWrapper stored = redisGet(key);
+            Object result;
+            if (stored != null && stored.get() != null) {
+                result = stored.get();
+                if (near != null) {
+                    near.put(nearKey, result);
+                }
+            } else {
+                result = load(key, valueLoader);
+            }
+            load.complete(result);
+            return (T) result;
+        } catch (RuntimeException ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(nearKey, load);
+        }
+    }
+
+    private Object awaitLoad(CompletableFuture<Object> running, Object key, Callable<?> valueLoader) {
+        try {
+            return running.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+        }
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        String nearKey = toNearKey(key);
+        LoadTicket ticket = new LoadTicket(clearEpoch.get());
+        loading.put(nearKey, ticket); // Loads of one key do not overlap on this node, see inFlight.
+        try {
+            long start = System.nanoTime();
+            Object loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception ex) {
+                throw new ValueRetrievalException(key, valueLoader, ex);
+            }
+            // A load is not a change, so the other nodes do not have to be told about it.
+            if (loaded != null && !isStale(ticket)) {
+                redisPut(key, loaded);
+                if (near != null) {
+                    near.put(nearKey, loaded);
+                }
+                stamp(nearKey, System.nanoTime() - start);
+                if (isStale(ticket)) {
+                    // A write raced with the store; the value may predate it.
+                    redisEvict(() -> redis.evict(key));
+                    dropLocal(nearKey);
+                }
+            }
+            return loaded;
+        } finally {
+            loading.remove(nearKey, ticket);
+        }
+    }
+
+    private boolean isStale(LoadTicket ticket) {
+        return ticket.stale || clearEpoch.get() != ticket.clearEpoch;
+    }
+
+    // Called before the change is applied, so a load storing after the change sees the mark.
+    private void markStale(String nearKey) {
+        LoadTicket ticket = loading.get(nearKey);
+        if (ticket != null) {
+            ticket.stale = true;
+        }
+    }
+
+    private void stamp(String nearKey, long loadNanos) {
+        if (loadStamps != null) {
+            loadStamps.put(nearKey, new LoadStamp(System.currentTimeMillis(), loadNanos / 1_000_000.0));
+        }
+    }
+
+    /**
+     * XFetch: refresh when {@code now - loadMillis * beta * ln(random) >= expiry}. {@code ln(random)} is
+     * negative, so the check fires with growing probability as the expiry approaches.
+     */
+    private void maybeRefreshEarly(Object key) {
+        Function<Object, Object> loader = refreshLoader;
+        if (earlyRefresh == null || loader == null) {
+            return;
+        }
+        String nearKey = toNearKey(key);
+        LoadStamp stamp = loadStamps.getIfPresent(nearKey);
+        if (stamp == null) {
+            return;
+        }
+        long expiresAt = stamp.storedAt() + earlyRefresh.ttl().toMillis();
+        double jitter = stamp.loadMillis() * earlyRefresh.beta() * Math.log(ThreadLocalRandom.current().nextDouble());
+        if (System.currentTimeMillis() - jitter < expiresAt) {
+            return;
+        }
+        CompletableFuture<Object> refresh = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(nearKey, refresh) != null) {
+            return;
+        }
+        try {
+            earlyRefresh.executor().execute(() -> {
+                try {
+                    refresh.complete(earlyRefresh.transactions().execute(status -> load(key, () -> loader.apply(key))));
+                } catch (RuntimeException ex) {
+                    refresh.completeExceptionally(ex);
+                } finally {
+                    inFlight.remove(nearKey, refresh);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(nearKey, refresh); // The entry will be reloaded on expiry instead.
+            refresh.complete(null);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        markStale(toNearKey(key));
+        redisPut(key, toStoreValue(value));
+        if (near != null) {
+            near.put(toNearKey(key), value);
+        }
+        if (loadStamps != null) {
+            LoadStamp previous = loadStamps.getIfPresent(toNearKey(key));
+            loadStamps.put(toNearKey(key), new LoadStamp(System.currentTimeMillis(), previous != null ? previous.loadMillis() : 0));
+        }
+        invalidationPublisher.accept(toNearKey(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        markStale(toNearKey(key));
+        redisEvict(() -> redis.evict(key));
+        evictions.increment();
+        evictLocal(toNearKey(key));
+        invalidationPublisher.accept(toNearKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        markStale(toNearKey(key));
+        boolean present = redisEvict(() -> redis.evictIfPresent(key));
+        if (present) {
+            evictions.increment();
+        }
+        evictLocal(toNearKey(key));
+        invalidationPublisher.accept(toNearKey(key));
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        clearEpoch.incrementAndGet();
+        redisEvict(redis::clear);
+        clears.increment();
+        clearLocal();
+        invalidationPublisher.accept(null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        clearEpoch.incrementAndGet();
+        boolean notEmpty = redisEvict(redis::invalidate);
+        clears.increment();
+        clearLocal();
+        invalidationPublisher.accept(null);
+        return notEmpty;
+    }
+
+    private ValueWrapper redisGet(Object key) {
+        long start = System.nanoTime();
+        try {
+            return redis.get(key);
+        } finally {
+            redisReadNanos.add(System.nanoTime() - start);
+            redisReads.increment();
+        }
+    }
+
+    private void redisPut(Object key, Object value) {
+        long start = System.nanoTime();
+        try {
+            redis.put(key, value);
+        } finally {
+            redisWriteNanos.add(System.nanoTime() - start);
+            redisWrites.increment();
+            puts.increment();
+        }
+    }
+
+    private void redisEvict(Runnable eviction) {
+        redisEvict(() -> {
+            eviction.run();
+            return true;
+        });
+    }
+
+    private boolean redisEvict(BooleanSupplier eviction) {
+        long start = System.nanoTime();
+        try {
+            return eviction.getAsBoolean();
+        } finally {
+            redisEvictNanos.add(System.nanoTime() - start);
+            redisEvicts.increment();
+        }
+    }
+
+    /**
+     * Drops a key from L1 only. Used when another node announces a write.
+     */
+    void evictLocal(String nearKey) {
+        markStale(nearKey);
+        dropLocal(nearKey);
+    }
+
+    private void dropLocal(String nearKey) {
+        if (near != null) {
+            near.invalidate(nearKey);
+        }
+        if (loadStamps != null) {
+            loadStamps.invalidate(nearKey);
+        }
+    }
+
+    void clearLocal() {
+        clearEpoch.incrementAndGet();
+        if (near != null) {
+            near.invalidateAll();
+        }
+        if (loadStamps != null) {
+            loadStamps.invalidateAll();
+        }
+    }
+
+    public TierStats getStats() {
+        return new TierStats(
+                name,
+                near != null,
+                near != null ? near.estimatedSize() : 0,
+                nearHits.sum(),
+                nearMisses.sum(),
+                redisHits.sum(),
+                redisMisses.sum(),
+                puts.sum(),
+                evictions.sum(),
+                clears.sum()
+        );
+    }
+
+    long nearSize() {
+        return near != null ? near.estimatedSize() : 0;
+    }
+
+    long nearHits() {
+        return nearHits.sum();
+    }
+
+    long nearMisses() {
+        return nearMisses.sum();
+    }
+
+    long redisHits() {
+        return redisHits.sum();
+    }
+
+    long redisMisses() {
+        return redisMisses.sum();
+    }
+
+    long puts() {
+        return puts.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    long clears() {
+        return clears.sum();
+    }
+
+    long redisReads() {
+        return redisReads.sum();
+    }
+
+    double redisReadNanos() {
+        return redisReadNanos.sum();
+    }
+
+    long redisWrites() {
+        return redisWrites.sum();
+    }
+
+    double redisWriteNanos() {
+        return redisWriteNanos.sum();
+    }
+
+    long redisEvicts() {
+        return redisEvicts.sum();
+    }
+
+    double redisEvictNanos() {
+        return redisEvictNanos.sum();
+    }
+
+    private static String toNearKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private record LoadStamp(long storedAt, double loadMillis) {
+    }
+
+    private static final class LoadTicket {
+
+        final long clearEpoch;
+        volatile boolean stale;
+
+        LoadTicket(long clearEpoch) {
+            this.clearEpoch = clearEpoch;
+        }
+    }
+}
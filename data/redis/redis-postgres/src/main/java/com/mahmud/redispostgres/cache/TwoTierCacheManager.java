@@ -0,0 +1,134 @@
+package com.mahmud.redispostgres.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Wraps a {@link RedisCacheManager} and hands out {@link TwoTierCache}s on top of its caches.
+ * <p>
+ * It also listens on the invalidation channel: messages published by other nodes evict the
+ * matching entries from the local L1 caches. Messages published by this node are ignored.
+ */
+public class TwoTierCacheManager implements CacheManager, MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TwoTierCacheManager.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String invalidationChannel;
+    private final boolean nearCacheEnabled;
+    private final long nearMaximumSize;
+    private final Duration nearExpireAfterWrite;
+    private final EarlyRefreshPolicy earlyRefresh;
+
+    public TwoTierCacheManager(RedisCacheManager redisCacheManager,
+                               StringRedisTemplate redisTemplate,
+                               ObjectMapper objectMapper,
+                               String invalidationChannel,
+                               boolean nearCacheEnabled,
+                               long nearMaximumSize,
+                               Duration nearExpireAfterWrite,
+                               EarlyRefreshPolicy earlyRefresh) {
+        this.redisCacheManager = redisCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.invalidationChannel = invalidationChannel;
+        this.nearCacheEnabled = nearCacheEnabled;
+        this.nearMaximumSize = nearMaximumSize;
+        this.nearExpireAfterWrite = nearExpireAfterWrite;
+        this.earlyRefresh = earlyRefresh;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    /**
+     * Lets entries of the cache be refreshed early, see {@link TwoTierCache#setRefreshLoader}.
+     * Caches without a refresh loader are only reloaded on a miss.
+     */
+    public void registerRefreshLoader(String name, Function<Object, Object> loader) {
+        caches.computeIfAbsent(name, this::createCache).setRefreshLoader(loader);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    public List<TierStats> getStats() {
+        return caches.values().stream()
+                .map(TwoTierCache::getStats)
+                .toList();
+    }
+
+    private TwoTierCache createCache(String name) {
+        com.github.benmanes.caffeine.cache.Cache<String, Object> near = null;
+        if (nearCacheEnabled) {
+            // Caffeine evicts with W-TinyLFU once maximumSize is reached.
+            near = Caffeine.newBuilder()
+                    .maximumSize(nearMaximumSize)
+                    .expireAfterWrite(nearExpireAfterWrite)
+                    .build();
+        }
+        return new TwoTierCache(name, redisCacheManager.getCache(name), near, key -> publish(name, key), earlyRefresh);
+    }
+
+    private void publish(String cacheName, String key) {
+        if (!nearCacheEnabled) {
+            return;
+        }
+        try {
+            String payload = objectMapper.writeValueAsString(new CacheInvalidationMessage(nodeId, cacheName, key));
+            redisTemplate.convertAndSend(invalidationChannel, payload);
+        } catch (JsonProcessingException e) {
+            log.warn("Could not publish cache invalidation for {}::{}", cacheName, key, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CacheInvalidationMessage invalidation;
+        try {
+            invalidation = objectMapper.readValue(message.getBody(), CacheInvalidationMessage.class);
+        } catch (IOException e) {
+            log.warn("Ignoring malformed cache invalidation message", e);
+            return;
+        }
+        if (nodeId.equals(invalidation.origin())) {
+            return;
+        }
+        TwoTierCache cache = caches.get(invalidation.cacheName());
+        if (cache == null) {
+            return;
+        }
+        if (invalidation.key() == null) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(invalidation.key());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mahmud.redispostgres.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the counters of a {@link TwoTierCache} to Micrometer.
+ * <p>
+ * The common {@code cache.*} meters count a hit in either tier as a hit and a miss in Redis as a
+ * miss. {@code cache.evictions} counts single keys; whole-cache clears are counted apart in
+ * {@code cache.clears}, since the number of keys they remove is unknown. {@code cache.tier.gets}
+ * splits hits and misses by tier, and {@code cache.redis.latency} times the Redis reads, writes
+ * and evictions made by this cache.
+ */
+public class TwoTierCacheMetrics extends CacheMeterBinder<TwoTierCache> {
+
+    public TwoTierCacheMetrics(TwoTierCache cache, Iterable<Tag> tags) {
+        super(cache, cache.getName(), tags);
+    }
+
+    @Override
+    protected Long size() {
+        TwoTierCache cache = getCache();
+        return cache != null ? cache.nearSize() : null;
+    }
+
+    @Override
+    protected long hitCount() {
+        return count(cache -> cache.nearHits() + cache.redisHits());
+    }
+
+    @Override
+    protected Long missCount() {
+        return count(TwoTierCache::redisMisses);
+    }
+
+    @Override
+    protected Long evictionCount() {
+        return count(TwoTierCache::evictions);
+    }
+
+    @Override
+    protected long putCount() {
+        return count(TwoTierCache::puts);
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        TwoTierCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        tierCounter(registry, cache, "near", "hit", TwoTierCache::nearHits);
+        tierCounter(registry, cache, "near", "miss", TwoTierCache::nearMisses);
+        tierCounter(registry, cache, "redis", "hit", TwoTierCache::redisHits);
+        tierCounter(registry, cache, "redis", "miss", TwoTierCache::redisMisses);
+        redisTimer(registry, cache, "read", TwoTierCache::redisReads, TwoTierCache::redisReadNanos);
+        redisTimer(registry, cache, "write", TwoTierCache::redisWrites, TwoTierCache::redisWriteNanos);
+        redisTimer(registry, cache, "evict", TwoTierCache::redisEvicts, TwoTierCache::redisEvictNanos);
+        FunctionCounter.builder("cache.clears", cache, TwoTierCache::clears)
+                .tags(getTagsWithCacheName())
+                .description("Times the whole cache was cleared or invalidated")
+                .register(registry);
+        Gauge.builder("cache.tier.size", cache, TwoTierCache::nearSize)
+                .tags(getTagsWithCacheName())
+                .tag("tier", "near")
+                .description("Entries held in the in-process tier")
+                .register(registry);
+    }
+
+    private long count(ToLongFunction<TwoTierCache> counter) {
+        TwoTierCache cache = getCache();
+        return cache != null ? counter.applyAsLong(cache) : 0;
+    }
+
+    private void tierCounter(MeterRegistry registry, TwoTierCache cache, String tier, String result,
+                             ToDoubleFunction<TwoTierCache> counter) {
+        FunctionCounter.builder("cache.tier.gets", cache, counter)
+                .tags(getTagsWithCacheName())
+                .tag("tier", tier)
+                .tag("result", result)
+                .description("Lookups answered (hit) or passed on (miss) by one tier")
+                .register(registry);
+    }
+
+    private void redisTimer(MeterRegistry registry, TwoTierCache cache, String operation,
+                            ToLongFunction<TwoTierCache> count, ToDoubleFunction<TwoTierCache> totalNanos) {
+        FunctionTimer.builder("cache.redis.latency", cache, count, totalNanos, TimeUnit.NANOSECONDS)
+                .tags(getTagsWithCacheName())
+                .tag("operation", operation)
+                .description("Time spent in Redis by the cache")
+                .register(registry);
+    }
+}
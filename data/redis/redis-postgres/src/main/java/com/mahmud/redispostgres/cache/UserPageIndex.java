@@ -0,0 +1,132 @@
+package com.mahmud.redispostgres.cache;
+
+import com.mahmud.redispostgres.model.User;
+import com.mahmud.redispostgres.model.UserPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of which keyset pages are cached in the "userPages" cache, so that a write to one
+ * user only evicts the pages that can contain it.
+ * <p>
+ * Every cached page {@code (afterId, lastId]} is a member {@code "afterId:size"} of a Redis sorted
+ * set scored by its last ID. The last page is not full, so a new row can land on it; it is scored
+ * {@code +inf}. A write to ID {@code x} evicts members with score >= x whose afterId < x.
+ */
+@Component
+public class UserPageIndex {
+
+    public static final String CACHE_NAME = "userPages";
+    private static final String INDEX_KEY = "userPages:index";
+
+    private final StringRedisTemplate redisTemplate;
+    private final CacheManager cacheManager;
+    private final Duration cacheTtl;
+
+    public UserPageIndex(StringRedisTemplate redisTemplate,
+                         CacheManager cacheManager,
+                         @Value("${app.cache.ttl:10m}") Duration cacheTtl) {
+        this.redisTemplate = redisTemplate;
+        this.cacheManager = cacheManager;
+        this.cacheTtl = cacheTtl;
+    }
+
+    public static String cacheKey(long afterId, int size) {
+        return afterId + ":" + size;
+    }
+
+    /**
+     * Returns the cached page, loading and caching it on a miss.
+     * <p>
+     * Before the load the page is claimed in the index with score {@code +inf}, so a write during the
+     * load removes the claim. Once the page is in the cache, it is registered with its real score.
+     * If that registration adds a new member, the claim was removed by an invalidation that may have
+     * run before the page was stored; the page is then evicted instead of staying cached unindexed.
+     * Hits do not touch the index. A page reloaded by an early refresh keeps its {@code +inf} claim
+     * (see {@link #refreshLoader}), which only makes it evicted by more writes than necessary.
+     */
+    public UserPage getPage(long afterId, int size, Supplier<UserPage> loader) {
+        String key = cacheKey(afterId, size);
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        AtomicBoolean loaded = new AtomicBoolean();
+        UserPage page = cache.get(key, () -> {
+            redisTemplate.opsForZSet().add(INDEX_KEY, key, Double.POSITIVE_INFINITY);
+            loaded.set(true);
+            return loader.get();
+        });
+        if (page != null && loaded.get() && register(key, page)) {
+            cache.evict(key);
+            redisTemplate.opsForZSet().remove(INDEX_KEY, key);
+        }
+        return page;
+    }
+
+    /**
+     * Returns the loader for early refreshes of cached pages. Like {@link #getPage}, it claims the
+     * page in the index before reading it with {@code query}.
+     * @param query Reads the page of {@code size} users after the ID {@code afterId}.
+     */
+    public Function<Object, Object> refreshLoader(BiFunction<Long, Integer, UserPage> query) {
+        return key -> {
+            String[] cursor = key.toString().split(":");
+            redisTemplate.opsForZSet().add(INDEX_KEY, key.toString(), Double.POSITIVE_INFINITY);
+            redisTemplate.expire(INDEX_KEY, cacheTtl);
+            return query.apply(Long.parseLong(cursor[0]), Integer.parseInt(cursor[1]));
+        };
+    }
+
+    /**
+     * @return Whether the page was not in the index yet.
+     */
+    private boolean register(String key, UserPage page) {
+        List<User> users = page.users();
+        // The last page is not full, so a new row can land on it.
+        double score = page.nextCursor() != null && !users.isEmpty()
+                ? users.get(users.size() - 1).getId()
+                : Double.POSITIVE_INFINITY;
+        Boolean added = redisTemplate.opsForZSet().add(INDEX_KEY, key, score);
+        // The index outlives every page registered in it; stale members only cost a no-op evict.
+        redisTemplate.expire(INDEX_KEY, cacheTtl);
+        return Boolean.TRUE.equals(added);
+    }
+
+    /**
+     * Evicts every cached page whose ID range can contain the given user.
+     */
+    public void invalidate(long userId) {
+        evictPages(userId, true);
+    }
+
+    /**
+     * Evicts every cached page that can contain an ID >= {@code minUserId}. Used once per bulk insert batch.
+     */
+    public void invalidateFrom(long minUserId) {
+        evictPages(minUserId, false);
+    }
+
+    private void evictPages(long userId, boolean onlyPagesStartingBelow) {
+        Set<String> members = redisTemplate.opsForZSet().rangeByScore(INDEX_KEY, userId, Double.POSITIVE_INFINITY);
+        if (members == null || members.isEmpty()) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        for (String member : members) {
+            long afterId = Long.parseLong(member.substring(0, member.indexOf(':')));
+            if (!onlyPagesStartingBelow || afterId < userId) {
+                cache.evict(member);
+                redisTemplate.opsForZSet().remove(INDEX_KEY, member);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.mahmud.redispostgres.config;
+
+import com.mahmud.redispostgres.datasource.PrimaryPinFilter;
+import com.mahmud.redispostgres.datasource.ReadWriteRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+
+/**
+ * Replaces the auto-configured data source with a primary and a replica pool when
+ * {@code app.datasource.replica.enabled=true}.
+ * <p>
+ * The primary pool is configured through {@code spring.datasource.*}. The replica pool starts from
+ * the same settings and is overridden by the Hikari properties under {@code app.datasource.replica}
+ * ({@code jdbc-url}, {@code username}, {@code password}, {@code maximum-pool-size}, ...).
+ * Only the routing data source is a candidate for injection, so JPA and {@code JdbcTemplate} use it.
+ * <p>
+ * Methods that fill the shared caches run in read-write transactions and so read from the primary;
+ * only uncached reads go to the replica.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean(defaultCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean(defaultCandidate = false)
+    @ConfigurationProperties("app.datasource.replica")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        dataSource.setTargetDataSource(new ReadWriteRoutingDataSource(primary, replica));
+        // Known up front, so the proxy does not open a connection at startup to find them out.
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.afterPropertiesSet();
+        return dataSource;
+    }
+
+    @Bean
+    public PrimaryPinFilter primaryPinFilter(
+            @Value("${app.datasource.primary-pin.cookie:db-primary-pin}") String cookieName,
+            @Value("${app.datasource.primary-pin.window:5s}") Duration window) {
+        return new PrimaryPinFilter(cookieName, window);
+    }
+}
@@ -1,23 +1,124 @@
 package com.mahmud.redispostgres.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahmud.redispostgres.cache.CompactCacheSerializer;
+import com.mahmud.redispostgres.cache.EarlyRefreshPolicy;
+import com.mahmud.redispostgres.cache.TwoTierCache;
+import com.mahmud.redispostgres.cache.TwoTierCacheManager;
+import com.mahmud.redispostgres.cache.TwoTierCacheMetrics;
+import com.mahmud.redispostgres.cache.UserPageIndex;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 @Configuration
 @EnableCaching
 public class RedisConfig {
 
+    private final Duration cacheTtl;
+    private final String cacheCodec;
+    private final int compressionThreshold;
+    private final String invalidationChannel;
+    private final boolean nearCacheEnabled;
+    private final long nearMaximumSize;
+    private final Duration nearExpireAfterWrite;
+    private final boolean earlyRefreshEnabled;
+    private final double earlyRefreshBeta;
+
+    public RedisConfig(
+            @Value("${app.cache.ttl:10m}") Duration cacheTtl,
+            @Value("${app.cache.codec:json}") String cacheCodec,
+            @Value("${app.cache.codec.compression-threshold:512}") int compressionThreshold,
+            @Value("${app.cache.invalidation-channel:cache-invalidation}") String invalidationChannel,
+            @Value("${app.cache.near.enabled:false}") boolean nearCacheEnabled,
+            @Value("${app.cache.near.maximum-size:10000}") long nearMaximumSize,
+            @Value("${app.cache.near.expire-after-write:30s}") Duration nearExpireAfterWrite,
+            @Value("${app.cache.early-refresh.enabled:false}") boolean earlyRefreshEnabled,
+            @Value("${app.cache.early-refresh.beta:1.0}") double earlyRefreshBeta
+    ) {
+        this.cacheTtl = cacheTtl;
+        this.cacheCodec = cacheCodec;
+        this.compressionThreshold = compressionThreshold;
+        this.invalidationChannel = invalidationChannel;
+        this.nearCacheEnabled = nearCacheEnabled;
+        this.nearMaximumSize = nearMaximumSize;
+        this.nearExpireAfterWrite = nearExpireAfterWrite;
+        this.earlyRefreshEnabled = earlyRefreshEnabled;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
     @Bean
     public RedisCacheConfiguration cacheConfiguration() {
         return RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(10)) // Cache expiration time
+                .entryTtl(cacheTtl) // Cache expiration time
                 .disableCachingNullValues()
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(cacheValueSerializer()));
+    }
+
+    /**
+     * "json" writes JSON values; "compact" writes the binary codec. Both read either format, so the
+     * setting can be changed with a rolling deploy once every node runs a version with the codec.
+     */
+    private RedisSerializer<Object> cacheValueSerializer() {
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        return switch (cacheCodec) {
+            case "json" -> new CompactCacheSerializer(json, compressionThreshold, false);
+            case "compact" -> new CompactCacheSerializer(json, compressionThreshold, true);
+            default -> throw new IllegalArgumentException("Unknown app.cache.codec: " + cacheCodec);
+        };
+    }
+
+    @Bean
+    public TwoTierCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                            RedisCacheConfiguration cacheConfiguration,
+                                            StringRedisTemplate redisTemplate,
+                                            ObjectMapper objectMapper,
+                                            @Qualifier("applicationTaskExecutor") Executor refreshExecutor,
+                                            PlatformTransactionManager transactionManager) {
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(cacheConfiguration)
+                .initialCacheNames(Set.of("users", UserPageIndex.CACHE_NAME)) // Known at startup, so their meters get bound.
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        // Background reloads fill the cache, so like the cached service methods they read from the primary.
+        TransactionTemplate refreshTransaction = new TransactionTemplate(transactionManager);
+        EarlyRefreshPolicy earlyRefresh = earlyRefreshEnabled
+                ? new EarlyRefreshPolicy(cacheTtl, earlyRefreshBeta, refreshExecutor, refreshTransaction)
+                : null;
+        // The near cache sits in front of Redis; the L1 TTL bounds staleness if an invalidation is lost.
+        return new TwoTierCacheManager(redisCacheManager, redisTemplate, objectMapper,
+                invalidationChannel, nearCacheEnabled, nearMaximumSize, nearExpireAfterWrite, earlyRefresh);
+    }
+
+    @Bean
+    public CacheMeterBinderProvider<TwoTierCache> twoTierCacheMeterBinderProvider() {
+        return TwoTierCacheMetrics::new;
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            TwoTierCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(invalidationChannel));
+        return container;
     }
 }
@@ -0,0 +1,43 @@
+package com.mahmud.redispostgres.controller;
+
+import com.mahmud.redispostgres.cache.TierStats;
+import com.mahmud.redispostgres.cache.TwoTierCacheManager;
+import com.mahmud.redispostgres.model.UserIdFilterStats;
+import com.mahmud.redispostgres.service.UserIdFilter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    private final TwoTierCacheManager cacheManager;
+    private final UserIdFilter userIdFilter;
+
+    public CacheController(TwoTierCacheManager cacheManager, UserIdFilter userIdFilter) {
+        this.cacheManager = cacheManager;
+        this.userIdFilter = userIdFilter;
+    }
+
+    /**
+     * Reports hit and miss counters of the in-process (L1) and Redis (L2) tiers for every cache.
+     * @return One entry per cache that has been used since startup.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<TierStats>> getStats() {
+        return ResponseEntity.ok(cacheManager.getStats());
+    }
+
+    /**
+     * Reports the size, false-positive rate and last rebuild time of the user ID filter.
+     * @return The filter state.
+     */
+    @GetMapping("/user-id-filter")
+    public ResponseEntity<UserIdFilterStats> getUserIdFilterStats() {
+        return ResponseEntity.ok(userIdFilter.getStats());
+    }
+}
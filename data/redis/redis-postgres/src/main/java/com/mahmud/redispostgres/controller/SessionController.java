@@ -1,14 +1,21 @@
 package com.mahmud.redispostgres.controller;
 
 import com.mahmud.redispostgres.model.Session;
+import com.mahmud.redispostgres.model.SessionPage;
+import com.mahmud.redispostgres.model.TouchBufferStats;
 import com.mahmud.redispostgres.service.SessionService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+
 @RestController
 @RequestMapping("/api/sessions")
 public class SessionController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final SessionService sessionService;
 
     public SessionController(SessionService sessionService) {
@@ -21,9 +28,16 @@ public class SessionController {
     }
 
     @GetMapping
-    public ResponseEntity<Iterable<Session>> getAllSessions() {
-        Iterable<Session> sessions = sessionService.getAllSessions();
-        return ResponseEntity.ok(sessions);
+    public ResponseEntity<SessionPage> getAllSessions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        try {
+            return ResponseEntity.ok(sessionService.getActiveSessions(since, cursor, pageSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/{sessionId}")
@@ -42,6 +56,11 @@ public class SessionController {
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/touch-stats")
+    public ResponseEntity<TouchBufferStats> getTouchBufferStats() {
+        return ResponseEntity.ok(sessionService.getTouchBufferStats());
+    }
+
     @DeleteMapping("/{sessionId}")
     public ResponseEntity<Void> deleteSession(@PathVariable String sessionId) {
         sessionService.deleteSession(sessionId);
@@ -1,20 +1,31 @@
 package com.mahmud.redispostgres.controller;
 
 import com.mahmud.redispostgres.model.User;
+import com.mahmud.redispostgres.model.UserImportResult;
+import com.mahmud.redispostgres.model.UserPage;
+import com.mahmud.redispostgres.service.UserImportService;
 import com.mahmud.redispostgres.service.UserService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final UserService userService;
+    private final UserImportService userImportService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserImportService userImportService) {
         this.userService = userService;
+        this.userImportService = userImportService;
     }
 
     /**
@@ -26,6 +37,31 @@ public class UserController {
         return ResponseEntity.ok(userService.getAllUsers());
     }
 
+    /**
+     * Retrieves one keyset page of users ordered by ID. Each page is cached on its own.
+     * @param after The cursor returned with the previous page (0 for the first page).
+     * @param size The page size, capped at 100.
+     * @return The users on the page and the cursor of the next page.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<UserPage> getUsersPage(@RequestParam(defaultValue = "0") long after,
+                                                 @RequestParam(defaultValue = "20") int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return ResponseEntity.ok(userService.getUsersPage(after, pageSize));
+    }
+
+    /**
+     * Streams all users as newline-delimited JSON without loading them into memory.
+     * @return The users, one JSON object per line.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        StreamingResponseBody body = userService::writeAllUsers;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     /**
      * Creates a new user and saves it to the database.
      * @param user The user to create.
@@ -36,6 +72,16 @@ public class UserController {
         return ResponseEntity.ok(userService.createUser(user));
     }
 
+    /**
+     * Imports users in batches from a JSON array or an NDJSON stream without buffering the whole body.
+     * @param body The request body.
+     * @return The number of imported users, batches and the throughput, and the users that were skipped.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<UserImportResult> importUsers(InputStream body) throws IOException {
+        return ResponseEntity.ok(userImportService.importUsers(body));
+    }
+
     /**
      * Retrieves a single user by ID without caching.
      * @param id The ID of the user to fetch.
@@ -0,0 +1,43 @@
+package com.mahmud.redispostgres.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Marks the current thread as one that must read from the primary, because the data it reads
+ * may have been written too recently to have reached the replica.
+ */
+public final class PrimaryPin {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private PrimaryPin() {
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+
+    /**
+     * Runs {@code action} pinned to the primary and restores the previous state afterwards.
+     * The pin only takes effect for connections the action acquires, so call it before the first statement.
+     */
+    public static <T> T call(Supplier<T> action) {
+        boolean wasPinned = isPinned();
+        pin();
+        try {
+            return action.get();
+        } finally {
+            if (!wasPinned) {
+                clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.mahmud.redispostgres.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Replica lag policy: after a client writes, its reads go to the primary for {@code window}.
+ * <p>
+ * A write request (anything but GET, HEAD and OPTIONS) pins itself and sets a cookie holding the
+ * end of the window. Later requests that carry an unexpired cookie are pinned too, so the client
+ * reads its own writes even when the replica is behind. {@code window} should cover the usual
+ * replication lag.
+ */
+public class PrimaryPinFilter extends OncePerRequestFilter {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final String cookieName;
+    private final Duration window;
+
+    public PrimaryPinFilter(String cookieName, Duration window) {
+        this.cookieName = cookieName;
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write && !window.isZero()) {
+            // Set before the handler runs: the response may be committed by the time it returns.
+            Cookie cookie = new Cookie(cookieName, String.valueOf(System.currentTimeMillis() + window.toMillis()));
+            cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        if (write || pinnedByCookie(request)) {
+            PrimaryPin.pin();
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            PrimaryPin.clear();
+        }
+    }
+
+    private boolean pinnedByCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,14 @@
+package com.mahmud.redispostgres.model;
+
+import java.util.List;
+
+/**
+ * One page of sessions ordered by last activity.
+ * @param sessions The sessions on this page.
+ * @param nextCursor The cursor of the next page, or null on the last page.
+ */
+public record SessionPage(
+        List<Session> sessions,
+        String nextCursor
+) {
+}
@@ -0,0 +1,26 @@
+package com.mahmud.redispostgres.model;
+
+/**
+ * Counters of the session touch write-behind buffer.
+ * @param touches Activity pings received.
+ * @param writes Single-field writes sent to Redis, including those of failed flushes.
+ * @param failedWrites Writes of failed flushes; their touches were put back into the buffer.
+ * @param dropped Touches dropped because the buffer was full.
+ * @param coalescingRatio Share of touches absorbed by a later touch of the same session.
+ * @param flushes Completed flushes.
+ * @param lastFlushMillis Duration of the last flush.
+ * @param maxFlushMillis Longest flush since startup.
+ * @param pending Sessions waiting for the next flush.
+ */
+public record TouchBufferStats(
+        long touches,
+        long writes,
+        long failedWrites,
+        long dropped,
+        double coalescingRatio,
+        long flushes,
+        double lastFlushMillis,
+        double maxFlushMillis,
+        int pending
+) {
+}
@@ -0,0 +1,34 @@
+package com.mahmud.redispostgres.model;
+
+/**
+ * State of the membership filter over existing user IDs.
+ * @param ready Whether the filter has been built; until then every lookup goes to the database.
+ * @param maxKnownId The highest ID added; higher IDs are not answered by the filter.
+ * @param insertions IDs added since the last rebuild.
+ * @param bitSize Size of the bit array.
+ * @param hashFunctions Number of hash functions.
+ * @param memoryBytes Heap used by the bit array.
+ * @param configuredFalsePositiveRate The rate the filter was sized for.
+ * @param expectedFalsePositiveRate The rate expected at the current number of insertions.
+ * @param lastRebuildMillis Duration of the last rebuild.
+ * @param coveredId The highest ID read by the last rebuild; misses up to it need no query.
+ * @param definiteMisses Ruled-out lookups answered without a query.
+ * @param confirmedMisses Ruled-out lookups above {@code coveredId}, checked on the primary.
+ * @param falseMisses Ruled-out IDs found on the primary, i.e. not yet announced to this node.
+ */
+public record UserIdFilterStats(
+        boolean ready,
+        long maxKnownId,
+        long insertions,
+        long bitSize,
+        int hashFunctions,
+        long memoryBytes,
+        double configuredFalsePositiveRate,
+        double expectedFalsePositiveRate,
+        long lastRebuildMillis,
+        long coveredId,
+        long definiteMisses,
+        long confirmedMisses,
+        long falseMisses
+) {
+}
@@ -0,0 +1,10 @@
+package com.mahmud.redispostgres.model;
+
+/**
+ * A user of a bulk import that was not inserted.
+ * @param item Position of the user in the upload, counting from 0, or null if the error is not about one user.
+ * @param status 400 for a user that cannot be read or breaks a constraint, 503 if the import stopped.
+ * @param reason What went wrong.
+ */
+public record UserImportError(Long item, int status, String reason) {
+}
@@ -0,0 +1,22 @@
+package com.mahmud.redispostgres.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk user import.
+ * @param imported Number of inserted users, also when the import stopped part way.
+ * @param failed Number of errors; see {@code errors}.
+ * @param batches Number of insert statements (and cache invalidations).
+ * @param elapsedMillis Wall-clock time of the import.
+ * @param rowsPerSecond Import throughput.
+ * @param errors One entry per user that was skipped, plus one if the import stopped.
+ */
+public record UserImportResult(
+        long imported,
+        long failed,
+        int batches,
+        long elapsedMillis,
+        double rowsPerSecond,
+        List<UserImportError> errors
+) {
+}
@@ -0,0 +1,14 @@
+package com.mahmud.redispostgres.model;
+
+import java.util.List;
+
+/**
+ * One keyset page of users ordered by ID.
+ * @param users The users on this page.
+ * @param nextCursor The ID to pass as {@code after} for the next page, or null on the last page.
+ */
+public record UserPage(
+        List<User> users,
+        Long nextCursor
+) {
+}
@@ -0,0 +1,110 @@
+package com.mahmud.redispostgres.repository;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sorted set of session IDs scored by their last activity time in epoch milliseconds.
+ * Listing and idle eviction read ranges of this set instead of the whole "sessions" keyspace.
+ */
+@Repository
+public class SessionActivityIndex {
+
+    public static final String INDEX_KEY = "sessions:active";
+    // The keyspace of the Session @RedisHash: a set of all IDs plus one hash per session.
+    private static final String SESSIONS_KEY = "sessions";
+    private static final RedisScript<List> EVICT_IF_IDLE_SCRIPT = new DefaultRedisScript<>("""
+            local evicted = {}
+            for i = 2, #ARGV do
+              local score = redis.call('ZSCORE', KEYS[1], ARGV[i])
+              if score and tonumber(score) < tonumber(ARGV[1]) then
+                redis.call('DEL', KEYS[i + 1])
+                redis.call('SREM', KEYS[2], ARGV[i])
+                redis.call('ZREM', KEYS[1], ARGV[i])
+                evicted[#evicted + 1] = ARGV[i]
+              end
+            end
+            return evicted
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public SessionActivityIndex(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public boolean exists() {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(INDEX_KEY));
+    }
+
+    public void record(String sessionId, LocalDateTime lastActiveTime) {
+        redisTemplate.opsForZSet().add(INDEX_KEY, sessionId, toMillis(lastActiveTime));
+    }
+
+    public void remove(String sessionId) {
+        redisTemplate.opsForZSet().remove(INDEX_KEY, sessionId);
+    }
+
+    public void removeAll(Collection<String> sessionIds) {
+        if (!sessionIds.isEmpty()) {
+            redisTemplate.opsForZSet().remove(INDEX_KEY, sessionIds.toArray());
+        }
+    }
+
+    /**
+     * Sessions active at or after {@code minMillis}, oldest first. Sessions with the same score are
+     * ordered by ID, so {@code offset} skips the ones with score {@code minMillis} already returned.
+     */
+    public List<TypedTuple<String>> activeSince(long minMillis, int offset, int count) {
+        Set<TypedTuple<String>> tuples = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(INDEX_KEY, minMillis, Double.POSITIVE_INFINITY, offset, count);
+        return tuples == null ? List.of() : List.copyOf(tuples);
+    }
+
+    /**
+     * Deletes the given sessions, as {@code SessionRepository.deleteById} would, and their index
+     * entries, but only those whose score is still below {@code cutoffMillis}. The check and the
+     * delete are one script, so a touch flushed in between keeps its session.
+     * @return The IDs of the deleted sessions.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> evictIfIdle(Collection<String> sessionIds, long cutoffMillis) {
+        if (sessionIds.isEmpty()) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>(sessionIds.size() + 2);
+        keys.add(INDEX_KEY);
+        keys.add(SESSIONS_KEY);
+        List<String> args = new ArrayList<>(sessionIds.size() + 1);
+        args.add(String.valueOf(cutoffMillis));
+        for (String sessionId : sessionIds) {
+            keys.add(SESSIONS_KEY + ":" + sessionId);
+            args.add(sessionId);
+        }
+        List<String> evicted = redisTemplate.execute(EVICT_IF_IDLE_SCRIPT, keys, args.toArray());
+        return evicted == null ? List.of() : evicted;
+    }
+
+    /**
+     * Up to {@code count} sessions whose last activity is before {@code cutoffMillis}, oldest first.
+     */
+    public List<String> idleBefore(long cutoffMillis, int offset, int count) {
+        Set<String> ids = redisTemplate.opsForZSet()
+                .rangeByScore(INDEX_KEY, Double.NEGATIVE_INFINITY, cutoffMillis - 1, offset, count);
+        return ids == null ? List.of() : List.copyOf(ids);
+    }
+}
@@ -0,0 +1,61 @@
+package com.mahmud.redispostgres.repository;
+
+import com.mahmud.redispostgres.model.User;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-row inserts into {@code _users} that bypass JPA.
+ * <p>
+ * The {@code IDENTITY} ID of {@link User} makes Hibernate insert row by row. Here a whole batch is
+ * sent as two arrays and expanded with {@code unnest} in one statement. The database still assigns
+ * the IDs and returns them, so the caches and the ID filter can be updated.
+ */
+@Repository
+public class UserBulkRepository {
+
+    private static final String INSERT_BATCH =
+            "insert into _users (name, email) select * from unnest(?::text[], ?::text[]) returning id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the users in one round trip, all or none.
+     * @param users Users without null elements.
+     * @return The generated IDs.
+     * @throws org.springframework.dao.DataIntegrityViolationException If a user breaks a constraint.
+     */
+    public List<Long> insertBatch(List<User> users) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            String[] names = users.stream().map(User::getName).toArray(String[]::new);
+            String[] emails = users.stream().map(User::getEmail).toArray(String[]::new);
+            Array nameArray = connection.createArrayOf("text", names);
+            Array emailArray = connection.createArrayOf("text", emails);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_BATCH)) {
+                statement.setArray(1, nameArray);
+                statement.setArray(2, emailArray);
+                List<Long> ids = new ArrayList<>(users.size());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                    }
+                }
+                return ids;
+            } finally {
+                nameArray.free();
+                emailArray.free();
+            }
+        });
+    }
+}
@@ -1,9 +1,29 @@
 package com.mahmud.redispostgres.repository;
 
 import com.mahmud.redispostgres.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
-}
\ No newline at end of file
+
+    // Keyset page: "where id > :afterId order by id limit :limit" walks the primary key index.
+    List<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    // Streams rows through a server-side cursor; must be consumed inside a transaction.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select u from User u order by u.id")
+    Stream<User> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("select u.id from User u")
+    Stream<Long> streamAllIds();
+}
@@ -0,0 +1,43 @@
+package com.mahmud.redispostgres.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Periodically deletes sessions that have been idle for longer than {@code app.sessions.idle-timeout}.
+ * Each run works through at most {@code max-batches} small batches so it never blocks Redis for long.
+ */
+@Component
+public class SessionReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionReaper.class);
+
+    private final SessionService sessionService;
+    private final Duration idleTimeout;
+    private final int batchSize;
+    private final int maxBatches;
+
+    public SessionReaper(SessionService sessionService,
+                         @Value("${app.sessions.idle-timeout:30m}") Duration idleTimeout,
+                         @Value("${app.sessions.reaper.batch-size:100}") int batchSize,
+                         @Value("${app.sessions.reaper.max-batches:10}") int maxBatches) {
+        this.sessionService = sessionService;
+        this.idleTimeout = idleTimeout;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Scheduled(fixedDelayString = "${app.sessions.reaper.interval-ms:60000}")
+    public void evictIdleSessions() {
+        int deleted = sessionService.evictIdleSessions(LocalDateTime.now().minus(idleTimeout), batchSize, maxBatches);
+        if (deleted > 0) {
+            log.info("Evicted {} idle sessions", deleted);
+        }
+    }
+}
@@ -1,19 +1,49 @@
 package com.mahmud.redispostgres.service;
 
 import com.mahmud.redispostgres.model.Session;
+import com.mahmud.redispostgres.model.SessionPage;
+import com.mahmud.redispostgres.model.TouchBufferStats;
+import com.mahmud.redispostgres.repository.SessionActivityIndex;
 import com.mahmud.redispostgres.repository.SessionRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class SessionService {
 
     private final SessionRepository sessionRepository;
+    private final SessionActivityIndex activityIndex;
+    private final SessionTouchBuffer touchBuffer;
 
-    public SessionService(SessionRepository sessionRepository) {
+    public SessionService(SessionRepository sessionRepository,
+                          SessionActivityIndex activityIndex,
+                          SessionTouchBuffer touchBuffer) {
         this.sessionRepository = sessionRepository;
+        this.activityIndex = activityIndex;
+        this.touchBuffer = touchBuffer;
+    }
+
+    /**
+     * Indexes sessions created before the activity index existed. Runs only while the index is missing.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillActivityIndex() {
+        if (activityIndex.exists()) {
+            return;
+        }
+        for (Session session : sessionRepository.findAll()) {
+            if (session.getLastActiveTime() != null) {
+                activityIndex.record(session.getSessionId(), session.getLastActiveTime());
+            }
+        }
     }
 
     public Session createSession(Long userId) {
@@ -21,26 +51,130 @@ public class SessionService {
         session.setUserId(userId);
         session.setLoginTime(LocalDateTime.now());
         session.setLastActiveTime(LocalDateTime.now());
-        return sessionRepository.save(session);
+        Session savedSession = sessionRepository.save(session);
+        activityIndex.record(savedSession.getSessionId(), savedSession.getLastActiveTime());
+        return savedSession;
     }
 
     public Session getSession(String sessionId) {
-        return sessionRepository.findById(sessionId).orElse(null);
+        Session session = sessionRepository.findById(sessionId).orElse(null);
+        LocalDateTime pendingTouch = touchBuffer.pendingTouch(sessionId);
+        if (session != null && pendingTouch != null) {
+            session.setLastActiveTime(pendingTouch); // Not flushed to Redis yet.
+        }
+        return session;
     }
 
-    public Iterable<Session> getAllSessions() {
-        return sessionRepository.findAll();
+    /**
+     * Lists sessions active at or after {@code since}, oldest activity first.
+     * Only the page itself is read from Redis: one range query on the activity index plus one hash per session.
+     * @param since Lower bound of the last activity time, used when there is no cursor.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param size The page size.
+     * @throws IllegalArgumentException If the cursor is not one this method returned.
+     */
+    public SessionPage getActiveSessions(LocalDateTime since, String cursor, int size) {
+        long minMillis;
+        int offset;
+        if (cursor != null) {
+            int separator = cursor.indexOf('-', 1); // Skip a leading minus sign.
+            try {
+                minMillis = Long.parseLong(cursor.substring(0, Math.max(separator, 0)));
+                offset = Integer.parseInt(cursor.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed cursor: " + cursor);
+            }
+            if (offset < 0) {
+                throw new IllegalArgumentException("Malformed cursor: " + cursor);
+            }
+        } else {
+            minMillis = since != null ? SessionActivityIndex.toMillis(since) : 0;
+            offset = 0;
+        }
+
+        List<TypedTuple<String>> entries = activityIndex.activeSince(minMillis, offset, size);
+        List<String> ids = entries.stream().map(TypedTuple::getValue).toList();
+        Map<String, Session> sessionsById = new HashMap<>();
+        sessionRepository.findAllById(ids).forEach(session -> sessionsById.put(session.getSessionId(), session));
+
+        List<Session> sessions = new ArrayList<>(ids.size());
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Session session = sessionsById.get(id);
+            if (session == null) {
+                missing.add(id);
+                continue;
+            }
+            LocalDateTime pendingTouch = touchBuffer.pendingTouch(id);
+            if (pendingTouch != null) {
+                session.setLastActiveTime(pendingTouch);
+            }
+            sessions.add(session);
+        }
+        activityIndex.removeAll(missing); // Index entries whose hash is gone.
+
+        return new SessionPage(sessions, nextCursor(entries, missing, size, minMillis, offset));
     }
 
-    public void updateLastActiveTime(String sessionId) {
-        Session session = sessionRepository.findById(sessionId).orElse(null);
-        if (session != null) {
-            session.setLastActiveTime(LocalDateTime.now());
-            sessionRepository.save(session);
+    // The cursor is "<score>-<offset>": the last score on this page and how many entries with that score were seen.
+    // Entries removed from the index above no longer take up a place, so they are not counted in the offset.
+    private static String nextCursor(List<TypedTuple<String>> entries, List<String> removed, int size, long minMillis, int offset) {
+        if (entries.size() < size) {
+            return null;
+        }
+        long lastScore = entries.get(entries.size() - 1).getScore().longValue();
+        int sameScore = (int) entries.stream()
+                .filter(entry -> entry.getScore().longValue() == lastScore)
+                .filter(entry -> !removed.contains(entry.getValue()))
+                .count();
+        int nextOffset = lastScore == minMillis ? offset + sameScore : sameScore;
+        return lastScore + "-" + nextOffset;
+    }
+
+    /**
+     * Deletes sessions that have been idle since before {@code cutoff}, in batches of {@code batchSize}.
+     * Sessions with an unflushed touch are skipped; the next flush moves them forward in the index.
+     * A session is only deleted if its score is still before the cutoff at the moment of the delete,
+     * so touches flushed meanwhile, by this node or another, keep it alive.
+     * @return The number of deleted sessions.
+     */
+    public int evictIdleSessions(LocalDateTime cutoff, int batchSize, int maxBatches) {
+        long cutoffMillis = SessionActivityIndex.toMillis(cutoff);
+        int deleted = 0;
+        int skipped = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            List<String> ids = activityIndex.idleBefore(cutoffMillis, skipped, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<String> candidates = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                if (touchBuffer.pendingTouch(id) != null) {
+                    skipped++;
+                    continue;
+                }
+                candidates.add(id);
+            }
+            // Candidates touched since the range was read have left it, so they take up no place in the offset.
+            deleted += activityIndex.evictIfIdle(candidates, cutoffMillis).size();
         }
+        return deleted;
+    }
+
+    /**
+     * Records session activity. The write is buffered and coalesced, see {@link SessionTouchBuffer}.
+     */
+    public void updateLastActiveTime(String sessionId) {
+        touchBuffer.touch(sessionId);
     }
 
     public void deleteSession(String sessionId) {
+        touchBuffer.discard(sessionId);
         sessionRepository.deleteById(sessionId);
+        activityIndex.remove(sessionId);
+    }
+
+    public TouchBufferStats getTouchBufferStats() {
+        return touchBuffer.getStats();
     }
 }
@@ -0,0 +1,235 @@
+package com.mahmud.redispostgres.service;
+
+import com.mahmud.redispostgres.model.TouchBufferStats;
+import com.mahmud.redispostgres.repository.SessionActivityIndex;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for {@code Session.lastActiveTime}.
+ * <p>
+ * Touches are kept in memory, one entry per session, so repeated pings of the same session
+ * between two flushes collapse into a single write. A flush sends one pipelined script call per
+ * session that sets only the {@code lastActiveTime} hash field and the session's score in the
+ * activity index, and only if the session still exists. The buffer holds at most
+ * {@code maxPending} sessions: when it is full, a flush is started on the buffer's own thread and
+ * touches of sessions not yet buffered are dropped (and counted) until it has run; the touching
+ * thread never waits for Redis. If a flush fails, its touches go back into the buffer (unless the
+ * session was touched again meanwhile) and are retried with the next flush; those that no longer
+ * fit are dropped, oldest first.
+ * <p>
+ * The counters are published as the {@code sessions.touch.*} meters.
+ */
+@Component
+public class SessionTouchBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionTouchBuffer.class);
+
+    private static final String SESSION_KEY_PREFIX = "sessions:";
+    private static final byte[] INDEX_KEY = SessionActivityIndex.INDEX_KEY.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TOUCH_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+              redis.call('HSET', KEYS[1], 'lastActiveTime', ARGV[1])
+              redis.call('ZADD', KEYS[2], ARGV[2], ARGV[3])
+              return 1
+            end
+            return 0
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate redisTemplate;
+    private final int maxPending;
+    private final Map<String, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(
+            runnable -> Thread.ofPlatform().name("session-touch-flush").daemon().unstarted(runnable));
+
+    private final LongAdder touches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong flushes = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private final Timer flushTimer;
+
+    public SessionTouchBuffer(StringRedisTemplate redisTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.sessions.touch.max-pending:10000}") int maxPending) {
+        this.redisTemplate = redisTemplate;
+        this.maxPending = maxPending;
+        FunctionCounter.builder("sessions.touch.touches", touches, LongAdder::sum)
+                .description("Session activity pings received")
+                .register(meterRegistry);
+        FunctionCounter.builder("sessions.touch.writes", writes, LongAdder::sum)
+                .description("Session activity writes sent to Redis, including failed ones")
+                .register(meterRegistry);
+        FunctionCounter.builder("sessions.touch.write.failures", failedWrites, LongAdder::sum)
+                .description("Session activity writes whose flush failed and that were put back into the buffer")
+                .register(meterRegistry);
+        FunctionCounter.builder("sessions.touch.dropped", dropped, LongAdder::sum)
+                .description("Session activity pings dropped because the buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("sessions.touch.pending", pending, Map::size)
+                .description("Sessions waiting for the next flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("sessions.touch.flush")
+                .description("Duration of a flush of the session touch buffer")
+                .register(meterRegistry);
+    }
+
+    public void touch(String sessionId) {
+        touches.increment();
+        LocalDateTime now = LocalDateTime.now();
+        // A session already in the buffer takes no extra room, so its touch is never dropped.
+        if (pending.replace(sessionId, now) != null) {
+            return;
+        }
+        if (pending.size() >= maxPending) {
+            dropped.increment();
+            requestFlush();
+            return;
+        }
+        pending.put(sessionId, now);
+        if (pending.size() >= maxPending) {
+            requestFlush();
+        }
+    }
+
+    // Hands the flush to the buffer's thread; returns at once, also while a flush is running.
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(() -> {
+                    flushRequested.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false); // Shutting down; the final flush takes what is left.
+            }
+        }
+    }
+
+    /**
+     * Returns the buffered activity time of a session, or null if nothing is waiting to be written.
+     */
+    public LocalDateTime pendingTouch(String sessionId) {
+        return pending.get(sessionId);
+    }
+
+    public void discard(String sessionId) {
+        pending.remove(sessionId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.sessions.touch.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, LocalDateTime>> batch = new ArrayList<>(pending.size());
+        for (String sessionId : pending.keySet()) {
+            LocalDateTime touchedAt = pending.remove(sessionId);
+            if (touchedAt != null) {
+                batch.add(Map.entry(sessionId, touchedAt));
+            }
+        }
+
+        long start = System.nanoTime();
+        writes.add(batch.size());
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<String, LocalDateTime> touch : batch) {
+                    connection.scriptingCommands().eval(TOUCH_SCRIPT, ReturnType.INTEGER, 2, keysAndArgs(touch));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            failedWrites.add(batch.size());
+            // Put the touches back, newest first, while they fit; a session touched during the flush keeps its newer time.
+            batch.sort(Map.Entry.<String, LocalDateTime>comparingByValue().reversed());
+            for (Map.Entry<String, LocalDateTime> touch : batch) {
+                pending.compute(touch.getKey(), (sessionId, current) -> {
+                    if (current != null) {
+                        return current.isAfter(touch.getValue()) ? current : touch.getValue();
+                    }
+                    if (pending.size() >= maxPending) {
+                        dropped.increment();
+                        return null;
+                    }
+                    return touch.getValue();
+                });
+            }
+            log.warn("Could not flush {} session touches, retrying with the next flush", batch.size(), e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lastFlushNanos = elapsed;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            flushes.incrementAndGet();
+            flushTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static byte[][] keysAndArgs(Map.Entry<String, LocalDateTime> touch) {
+        String sessionId = touch.getKey();
+        LocalDateTime touchedAt = touch.getValue();
+        return new byte[][]{
+                (SESSION_KEY_PREFIX + sessionId).getBytes(StandardCharsets.UTF_8),
+                INDEX_KEY,
+                touchedAt.toString().getBytes(StandardCharsets.UTF_8),
+                String.valueOf(SessionActivityIndex.toMillis(touchedAt)).getBytes(StandardCharsets.UTF_8),
+                sessionId.getBytes(StandardCharsets.UTF_8)
+        };
+    }
+
+    public TouchBufferStats getStats() {
+        long touchCount = touches.sum();
+        long writeCount = writes.sum();
+        // Retried touches are written again, so they count against the ratio.
+        double coalescingRatio = touchCount == 0 ? 0 : Math.max(0, 1 - (double) writeCount / touchCount);
+        return new TouchBufferStats(
+                touchCount,
+                writeCount,
+                failedWrites.sum(),
+                dropped.sum(),
+                coalescingRatio,
+                flushes.get(),
+                lastFlushNanos / 1_000_000.0,
+                maxFlushNanos / 1_000_000.0,
+                pending.size()
+        );
+    }
+}
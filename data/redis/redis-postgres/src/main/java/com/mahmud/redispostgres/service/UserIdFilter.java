@@ -0,0 +1,229 @@
+package com.mahmud.redispostgres.service;
+
+import com.mahmud.redispostgres.cache.BloomFilter;
+import com.mahmud.redispostgres.datasource.PrimaryPin;
+import com.mahmud.redispostgres.model.UserIdFilterStats;
+import com.mahmud.redispostgres.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter over the IDs in the {@code _users} table, used to spot lookups of IDs that most
+ * likely do not exist.
+ * <p>
+ * The filter is built on startup from the primary and then rebuilt periodically, or as soon as it
+ * holds more IDs than it was sized for. Deleted IDs stay in the filter until the next rebuild, which
+ * only costs a database query. New IDs are announced on a Redis channel so every node adds them.
+ * <p>
+ * A rebuild reads every ID from the primary, so a miss at or below the highest ID it read is
+ * answered without a query. Newer IDs become visible out of order across nodes, and an
+ * announcement can be late or lost, so a miss above that mark is confirmed on the primary
+ * ({@link #confirmMiss}). IDs above the highest one a node has seen skip the filter altogether.
+ * A user whose insert committed only after the rebuild read past its ID, and whose announcement
+ * was lost, reads as missing until the next rebuild.
+ */
+@Component
+public class UserIdFilter implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIdFilter.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final StringRedisTemplate redisTemplate;
+    private final Executor rebuildExecutor;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final long minExpectedInsertions;
+    private final String channel;
+
+    private volatile BloomFilter active;   // null until the first build completes
+    private volatile BloomFilter building; // receives new IDs while a rebuild runs
+    private volatile long coveredId;       // highest ID read by the last rebuild; written after active
+    private volatile long expectedInsertions;
+    private volatile long lastRebuildMillis;
+    private final AtomicLong maxKnownId = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder confirmedMisses = new LongAdder();
+    private final LongAdder falseMisses = new LongAdder();
+
+    public UserIdFilter(UserRepository userRepository,
+                        PlatformTransactionManager transactionManager,
+                        StringRedisTemplate redisTemplate,
+                        RedisMessageListenerContainer listenerContainer,
+                        @Qualifier("applicationTaskExecutor") Executor rebuildExecutor,
+                        @Value("${app.users.id-filter.enabled:true}") boolean enabled,
+                        @Value("${app.users.id-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                        @Value("${app.users.id-filter.min-expected-insertions:10000}") long minExpectedInsertions,
+                        @Value("${app.users.id-filter.channel:user-ids}") String channel) {
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.redisTemplate = redisTemplate;
+        this.rebuildExecutor = rebuildExecutor;
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minExpectedInsertions = minExpectedInsertions;
+        this.channel = channel;
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+        }
+    }
+
+    /**
+     * @return false if this node has no record of the ID; confirm with {@link #confirmMiss} before relying on it.
+     */
+    public boolean mightExist(long id) {
+        BloomFilter filter = active;
+        return filter == null || id > maxKnownId.get() || filter.mightContain(id);
+    }
+
+    /**
+     * Resolves an ID the filter ruled out. At or below the last rebuild's highest ID the answer is
+     * null without a query; above it the ID is looked up on the primary, which the replica may not
+     * have caught up with, and an ID that exists after all is added to the filter.
+     * @param loader Reads the user; runs pinned to the primary.
+     * @return The loaded value, or null if the user does not exist.
+     */
+    public <T> T confirmMiss(long id, Supplier<T> loader) {
+        long covered = coveredId; // Read before active: a rebuild publishes active first.
+        BloomFilter filter = active;
+        if (filter != null && id <= covered && !filter.mightContain(id)) {
+            definiteMisses.increment();
+            return null;
+        }
+        confirmedMisses.increment();
+        T loaded = PrimaryPin.call(loader);
+        if (loaded != null) {
+            falseMisses.increment();
+            addLocal(id);
+        }
+        return loaded;
+    }
+
+    /**
+     * Adds a newly created ID on this node and announces it to the other nodes.
+     */
+    public void added(long id) {
+        addedAll(List.of(id));
+    }
+
+    /**
+     * Adds a batch of new IDs and announces them in a single comma-separated message.
+     */
+    public void addedAll(List<Long> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        ids.forEach(this::addLocal);
+        redisTemplate.convertAndSend(channel, ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        for (String id : new String(message.getBody(), StandardCharsets.UTF_8).split(",")) {
+            addLocal(Long.parseLong(id));
+        }
+    }
+
+    private void addLocal(long id) {
+        BloomFilter pending = building;
+        if (pending != null) {
+            pending.add(id);
+        }
+        BloomFilter filter = active;
+        if (filter != null) {
+            filter.add(id);
+            if (filter.insertions() > expectedInsertions && !rebuilding.get()) {
+                rebuildExecutor.execute(this::rebuild); // Over capacity: the false-positive rate is drifting up.
+            }
+        }
+        maxKnownId.accumulateAndGet(id, Math::max);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.users.id-filter.rebuild-interval-ms:3600000}",
+            initialDelayString = "${app.users.id-filter.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // The replica can lag behind; IDs missing from it would read as definite misses.
+            PrimaryPin.call(this::rebuildFromPrimary);
+        } catch (RuntimeException e) {
+            building = null;
+            log.warn("Could not rebuild user ID filter", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private Void rebuildFromPrimary() {
+        long start = System.currentTimeMillis();
+        long expected = Math.max(minExpectedInsertions, userRepository.count() * 2);
+        BloomFilter filter = new BloomFilter(expected, falsePositiveRate);
+        building = filter;
+        long maxId = readOnlyTransaction.execute(status -> {
+            long max = 0;
+            try (Stream<Long> ids = userRepository.streamAllIds()) {
+                for (Long id : (Iterable<Long>) ids::iterator) {
+                    filter.add(id);
+                    max = Math.max(max, id);
+                }
+            }
+            return max;
+        });
+        maxKnownId.accumulateAndGet(maxId, Math::max);
+        expectedInsertions = expected;
+        active = filter;
+        coveredId = maxId;
+        building = null;
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        log.info("Rebuilt user ID filter: {} IDs, {} bytes, {} hash functions in {} ms",
+                filter.insertions(), filter.memoryBytes(), filter.hashFunctions(), lastRebuildMillis);
+        return null;
+    }
+
+    public UserIdFilterStats getStats() {
+        BloomFilter filter = active;
+        return new UserIdFilterStats(
+                filter != null,
+                maxKnownId.get(),
+                filter != null ? filter.insertions() : 0,
+                filter != null ? filter.bitSize() : 0,
+                filter != null ? filter.hashFunctions() : 0,
+                filter != null ? filter.memoryBytes() : 0,
+                falsePositiveRate,
+                filter != null ? filter.expectedFalsePositiveRate() : 0,
+                lastRebuildMillis,
+                coveredId,
+                definiteMisses.sum(),
+                confirmedMisses.sum(),
+                falseMisses.sum()
+        );
+    }
+}
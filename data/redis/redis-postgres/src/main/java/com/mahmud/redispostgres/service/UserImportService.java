@@ -0,0 +1,164 @@
+package com.mahmud.redispostgres.service;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mahmud.redispostgres.cache.UserPageIndex;
+import com.mahmud.redispostgres.model.User;
+import com.mahmud.redispostgres.model.UserImportError;
+import com.mahmud.redispostgres.model.UserImportResult;
+import com.mahmud.redispostgres.repository.UserBulkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Imports users from a JSON array or NDJSON stream in fixed-size batches.
+ * <p>
+ * The input is parsed incrementally, so only one batch is in memory at a time. Each batch is one
+ * multi-row insert and is committed on its own. Caches are invalidated once per batch: the
+ * "allUsers" entry, the user pages from the smallest new ID on, and the ID filter.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    private final UserBulkRepository userBulkRepository;
+    private final UserPageIndex userPageIndex;
+    private final UserIdFilter userIdFilter;
+    private final CacheManager cacheManager;
+    private final ObjectReader userReader;
+    private final int batchSize;
+
+    public UserImportService(UserBulkRepository userBulkRepository,
+                             UserPageIndex userPageIndex,
+                             UserIdFilter userIdFilter,
+                             CacheManager cacheManager,
+                             ObjectMapper objectMapper,
+                             @Value("${app.users.bulk-import.batch-size:1000}") int batchSize) {
+        this.userBulkRepository = userBulkRepository;
+        this.userPageIndex = userPageIndex;
+        this.userIdFilter = userIdFilter;
+        this.cacheManager = cacheManager;
+        this.userReader = objectMapper.readerFor(User.class);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Null items and items that do not map to a user are reported as 400 errors and skipped; malformed
+     * JSON is reported the same way but ends the upload. A batch that breaks a constraint is inserted
+     * again row by row, so only the offending users are reported. If the database fails, the import
+     * stops and the users of the batches committed before are still reported as imported.
+     */
+    public UserImportResult importUsers(InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportJob job = new ImportJob();
+        List<User> batch = new ArrayList<>(batchSize);
+        List<Long> items = new ArrayList<>(batchSize);
+        long item = 0;
+        // readValues() walks the elements of a root-level array, or whitespace-separated values (NDJSON).
+        try (MappingIterator<User> users = userReader.readValues(in)) {
+            while (!job.stopped && users.hasNextValue()) {
+                long position = item++;
+                User user;
+                try {
+                    user = users.nextValue();
+                } catch (JsonMappingException e) {
+                    // Well-formed JSON that is not a user: the iterator skips past it, so carry on.
+                    job.errors.add(new UserImportError(position, 400, describe(e)));
+                    continue;
+                }
+                if (user == null) {
+                    job.errors.add(new UserImportError(position, 400, "User cannot be null"));
+                    continue;
+                }
+                batch.add(user);
+                items.add(position);
+                if (batch.size() == batchSize) {
+                    insert(job, batch, items);
+                    batch.clear();
+                    items.clear();
+                }
+            }
+        } catch (JsonParseException e) {
+            // Malformed JSON: nothing after it can be read reliably, but what came before still goes in.
+            job.errors.add(new UserImportError(null, 400, describe(e)));
+        }
+        if (!batch.isEmpty() && !job.stopped) {
+            insert(job, batch, items);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        return new UserImportResult(job.imported, job.errors.size(), job.batches, elapsed,
+                elapsed == 0 ? job.imported : job.imported * 1000.0 / elapsed, List.copyOf(job.errors));
+    }
+
+    private void insert(ImportJob job, List<User> batch, List<Long> items) {
+        try {
+            job.imported += insert(job, batch);
+        } catch (DataIntegrityViolationException e) {
+            // The statement inserted nothing; find the rows that broke the constraint one by one.
+            for (int i = 0; i < batch.size() && !job.stopped; i++) {
+                try {
+                    job.imported += insert(job, List.of(batch.get(i)));
+                } catch (DataIntegrityViolationException rowError) {
+                    job.errors.add(new UserImportError(items.get(i), 400, rowError.getMostSpecificCause().getMessage()));
+                } catch (DataAccessException rowError) {
+                    job.stop(rowError);
+                }
+            }
+        } catch (DataAccessException e) {
+            job.stop(e);
+        }
+    }
+
+    private int insert(ImportJob job, List<User> batch) {
+        job.batches++;
+        List<Long> ids = userBulkRepository.insertBatch(batch);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Cache users = cacheManager.getCache("users");
+        if (users != null) {
+            users.evict("allUsers");
+        }
+        userPageIndex.invalidateFrom(Collections.min(ids));
+        userIdFilter.addedAll(ids);
+        return ids.size();
+    }
+
+    private static String describe(JsonProcessingException e) {
+        JsonLocation location = e.getLocation();
+        return location == null ? e.getOriginalMessage()
+                : e.getOriginalMessage() + " (line " + location.getLineNr() + ", column " + location.getColumnNr() + ")";
+    }
+
+    private static class ImportJob {
+
+        long imported;
+        int batches;
+        boolean stopped;
+        final List<UserImportError> errors = new ArrayList<>();
+
+        void stop(DataAccessException e) {
+            log.warn("Bulk import stopped after {} users", imported, e);
+            errors.add(new UserImportError(null, 503, "Import stopped: " + e.getMostSpecificCause().getMessage()));
+            stopped = true;
+        }
+    }
+}
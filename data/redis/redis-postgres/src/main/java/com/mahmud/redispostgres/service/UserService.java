@@ -1,52 +1,135 @@
 package com.mahmud.redispostgres.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mahmud.redispostgres.cache.TwoTierCacheManager;
+import com.mahmud.redispostgres.cache.UserPageIndex;
 import com.mahmud.redispostgres.model.User;
+import com.mahmud.redispostgres.model.UserPage;
 import com.mahmud.redispostgres.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service // Marks this class as a service component in Spring.
 public class UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
     private final UserRepository userRepository;
+    private final UserPageIndex userPageIndex;
+    private final UserIdFilter userIdFilter;
+    private final EntityManager entityManager;
+    private final ObjectWriter userWriter;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository,
+                       UserPageIndex userPageIndex,
+                       UserIdFilter userIdFilter,
+                       EntityManager entityManager,
+                       ObjectMapper objectMapper,
+                       TwoTierCacheManager cacheManager) {
         this.userRepository = userRepository;
+        this.userPageIndex = userPageIndex;
+        this.userIdFilter = userIdFilter;
+        this.entityManager = entityManager;
+        this.userWriter = objectMapper.writerFor(User.class);
+        // Early refreshes reload these in the background, with the same queries as the cached methods below.
+        cacheManager.registerRefreshLoader("users", key -> "allUsers".equals(key)
+                ? userRepository.findAll()
+                : userRepository.findById((Long) key).orElse(null));
+        cacheManager.registerRefreshLoader(UserPageIndex.CACHE_NAME, userPageIndex.refreshLoader(this::readPage));
     }
 
     /**
      * Fetches all users from the database and caches the result in Redis.
      * @return A list of all users.
      */
-    @Cacheable(value = "users", key = "'allUsers'") // Caches the result under the key "users::allUsers".
+    // Not read-only: cache fills read from the primary. A replica read right after a write would put
+    // pre-write data into the shared cache for the whole TTL, for every client.
+    @Transactional
+    @Cacheable(value = "users", key = "'allUsers'", sync = true) // Caches the result under the key "users::allUsers".
     public List<User> getAllUsers() {
-        System.out.println("Fetching users from the database..."); // Logs when the database is queried.
+        log.debug("Fetching users from the database"); // Cache misses are counted by the cache.gets meter.
         return userRepository.findAll(); // Fetches all users from PostgreSQL.
     }
 
+    /**
+     * Fetches one keyset page of users and caches it under "userPages::<afterId>:<size>".
+     * Only the pages whose ID range covers a written user are evicted, see {@link UserPageIndex}.
+     * @param afterId The last ID of the previous page (0 for the first page).
+     * @param size The maximum number of users on the page.
+     * @return The page and the cursor of the next page.
+     */
+    @Transactional // Fills the cache, so reads from the primary, see getAllUsers.
+    public UserPage getUsersPage(long afterId, int size) {
+        return userPageIndex.getPage(afterId, size, () -> readPage(afterId, size));
+    }
+
+    private UserPage readPage(long afterId, int size) {
+        List<User> users = userRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size));
+        boolean full = users.size() == size;
+        return new UserPage(users, full && !users.isEmpty() ? users.get(users.size() - 1).getId() : null);
+    }
+
+    /**
+     * Writes every user as one JSON line, reading the table through a database cursor.
+     * Entities are detached after they are written so the persistence context stays small.
+     * @param out The response stream.
+     */
+    @Transactional(readOnly = true) // Not cached, so it can be served by the replica.
+    public void writeAllUsers(OutputStream out) throws IOException {
+        try (Stream<User> users = userRepository.streamAll()) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                User user = iterator.next();
+                out.write(userWriter.writeValueAsBytes(user));
+                out.write('\n');
+                entityManager.detach(user);
+            }
+        }
+        out.flush();
+    }
+
     /**
      * Creates a new user and saves it to the database.
-     * Invalidates the "allUsers" cache after creating a user.
+     * Invalidates the "allUsers" cache and the last user page after creating a user.
      * @param user The user to create.
      * @return The newly created user.
      */
     @CacheEvict(value = "users", key = "'allUsers'") // Invalidates the cache after creating a user.
     public User createUser(User user) {
-        return userRepository.save(user); // Saves the user to PostgreSQL.
+        User savedUser = userRepository.save(user); // Saves the user to PostgreSQL.
+        userIdFilter.added(savedUser.getId());
+        userPageIndex.invalidate(savedUser.getId());
+        return savedUser;
     }
 
     /**
      * Fetches a single user by ID and caches the result if the ID is greater than 10.
+     * With sync = true only one request per node loads an expired entry; the others wait for it.
+     * IDs the {@link UserIdFilter} rules out are read from the primary, never from a lagging replica.
      * @param id The ID of the user to fetch.
      * @return The user if found, or null if not found.
      */
-    @Cacheable(value = "users", key = "#id", condition = "#id > 10") // Caches the result only if the ID is greater than 10.
+    @Transactional // Fills the cache, so reads from the primary, see getAllUsers.
+    @Cacheable(value = "users", key = "#id", condition = "#id > 10", sync = true) // Caches the result only if the ID is greater than 10.
     public User getUserById(Long id) {
-        System.out.println("Fetching user with ID " + id + " from the database...");
+        if (!userIdFilter.mightExist(id)) {
+            return userIdFilter.confirmMiss(id, () -> userRepository.findById(id).orElse(null));
+        }
+        log.debug("Fetching user with ID {} from the database", id);
         return userRepository.findById(id).orElse(null);
     }
 
@@ -58,7 +141,7 @@ public class UserService {
      */
     @CachePut(value = "users", key = "#id") // Updates the cache with the result of this method.
     public User updateUser(Long id, User updatedUser) {
-        System.out.println("Updating user with ID " + id + " in the database...");
+        log.debug("Updating user with ID {} in the database", id);
         User existingUser = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found with ID: " + id));
 
@@ -67,7 +150,9 @@ public class UserService {
         existingUser.setEmail(updatedUser.getEmail());
 
         // Save the updated user to the database
-        return userRepository.save(existingUser);
+        User savedUser = userRepository.save(existingUser);
+        userPageIndex.invalidate(id);
+        return savedUser;
     }
 
     /**
@@ -76,7 +161,8 @@ public class UserService {
      */
     @CacheEvict(value = "users", key = "#id") // Removes the cache entry for the deleted user.
     public void deleteUser(Long id) {
-        System.out.println("Deleting user with ID " + id + " from the database...");
+        log.debug("Deleting user with ID {} from the database", id);
         userRepository.deleteById(id); // Deletes the user from PostgreSQL.
+        userPageIndex.invalidate(id);
     }
 }
\ No newline at end of file
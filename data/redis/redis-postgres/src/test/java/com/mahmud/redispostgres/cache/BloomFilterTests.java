@@ -0,0 +1,35 @@
+package com.mahmud.redispostgres.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+    @Test
+    void neverReportsAnAddedKeyAsMissing() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id);
+        }
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(filter.mightContain(id), "false negative for " + id);
+        }
+        assertTrue(filter.insertions() <= 10_000); // Keys whose bits were all set already are not counted.
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id);
+        }
+        int falsePositives = 0;
+        for (long id = 1_000_001; id <= 1_100_000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false-positive rate " + falsePositives / 100_000.0);
+    }
+}
@@ -0,0 +1,100 @@
+package com.mahmud.redispostgres.cache;
+
+import com.mahmud.redispostgres.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of the compact codec against the JSON serializer it replaces; {@link #main}
+ * first prints the bytes per cache entry of both, for each payload.
+ * Not run by the build: start {@link #main} from the IDE, or with {@code java} on the test classpath after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactCacheSerializerBenchmark {
+
+    private static final int[] PAYLOADS = {1, 20, 100};
+
+    @Param({"1", "20", "100"})
+    public int users;
+
+    private GenericJackson2JsonRedisSerializer json;
+    private CompactCacheSerializer compact;
+    private Object value;
+    private byte[] jsonBytes;
+    private byte[] compactBytes;
+
+    @Setup
+    public void setUp() {
+        json = new GenericJackson2JsonRedisSerializer();
+        compact = new CompactCacheSerializer(json, 512, true);
+        value = payload(users);
+        jsonBytes = json.serialize(value);
+        compactBytes = compact.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return json.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] encodeCompact() {
+        return compact.serialize(value);
+    }
+
+    @Benchmark
+    public Object decodeJson() {
+        return json.deserialize(jsonBytes);
+    }
+
+    @Benchmark
+    public Object decodeCompact() {
+        return compact.deserialize(compactBytes);
+    }
+
+    // A single user as cached by getUserById, or a list as cached for allUsers and the user pages.
+    private static Object payload(int users) {
+        List<User> list = CompactCacheSerializerTests.users(users);
+        return users == 1 ? list.get(0) : list;
+    }
+
+    static void printSizes() {
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        CompactCacheSerializer compact = new CompactCacheSerializer(json, 512, true);
+        System.out.printf("%-8s %12s %15s %8s%n", "users", "json bytes", "compact bytes", "ratio");
+        for (int users : PAYLOADS) {
+            Object value = payload(users);
+            int jsonSize = json.serialize(value).length;
+            int compactSize = compact.serialize(value).length;
+            System.out.printf("%-8d %12d %15d %8.2f%n", users, jsonSize, compactSize, (double) compactSize / jsonSize);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printSizes();
+        new Runner(new OptionsBuilder()
+                .include(CompactCacheSerializerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
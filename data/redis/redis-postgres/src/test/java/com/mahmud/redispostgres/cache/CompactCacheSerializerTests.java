@@ -0,0 +1,77 @@
+package com.mahmud.redispostgres.cache;
+
+import com.mahmud.redispostgres.model.User;
+import com.mahmud.redispostgres.model.UserPage;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactCacheSerializerTests {
+
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+    private final CompactCacheSerializer compact = new CompactCacheSerializer(json, 512, true);
+    private final CompactCacheSerializer jsonWriter = new CompactCacheSerializer(json, 512, false);
+
+    @Test
+    void roundTripsUsersListsAndPages() {
+        User user = new User(42L, "Ada", null);
+        assertEquals(user, compact.deserialize(compact.serialize(user)));
+        assertEquals(List.of(user, new User(43L, "", "b@example.com")),
+                compact.deserialize(compact.serialize(List.of(user, new User(43L, "", "b@example.com")))));
+        UserPage page = new UserPage(List.of(user), null);
+        assertEquals(page, compact.deserialize(compact.serialize(page)));
+    }
+
+    @Test
+    void deflatesLargePayloads() {
+        List<User> users = users(200);
+        byte[] bytes = compact.serialize(users);
+        assertEquals(CompactCacheSerializer.MAGIC, bytes[0]);
+        assertTrue((bytes[2] & 1) != 0, "expected the deflated flag");
+        assertTrue(bytes.length < json.serialize(users).length);
+        assertEquals(users, compact.deserialize(bytes));
+    }
+
+    @Test
+    void embedsOtherTypesAsJson() {
+        Map<String, Object> value = new HashMap<>(Map.of("answer", 42));
+        assertEquals(value, compact.deserialize(compact.serialize(value)));
+    }
+
+    @Test
+    void readsLegacyJsonEntries() {
+        User user = new User(7L, "Grace", "grace@example.com");
+        assertEquals(user, compact.deserialize(json.serialize(user)));
+        assertEquals(users(3), compact.deserialize(json.serialize(users(3))));
+    }
+
+    @Test
+    void jsonModeWritesJsonAndReadsCompact() {
+        User user = new User(7L, "Grace", "grace@example.com");
+        byte[] written = jsonWriter.serialize(user);
+        assertEquals(user, json.deserialize(written)); // Readable by nodes without the codec.
+        assertEquals(user, jsonWriter.deserialize(compact.serialize(user)));
+    }
+
+    @Test
+    void mapsNullToEmpty() {
+        assertEquals(0, compact.serialize(null).length);
+        assertNull(compact.deserialize(new byte[0]));
+    }
+
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            users.add(new User(id, "User " + id, "user" + id + "@example.com"));
+        }
+        return users;
+    }
+}
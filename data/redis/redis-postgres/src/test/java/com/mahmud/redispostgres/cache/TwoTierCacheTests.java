@@ -0,0 +1,138 @@
+package com.mahmud.redispostgres.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Load test for stampede protection: N concurrent readers of one expiring key, counting "database" queries.
+ */
+class TwoTierCacheTests {
+
+    private static final int READERS = 64;
+
+    @Test
+    void concurrentMissesOfOneKeyRunOneLoad() throws Exception {
+        TwoTierCache cache = new TwoTierCache("users", new ConcurrentMapCache("users"),
+                Caffeine.newBuilder().maximumSize(100).build(), key -> { }, null);
+        AtomicInteger dbQueries = new AtomicInteger();
+
+        assertEquals(List.of("user-42"), readConcurrently(cache, dbQueries));
+        assertEquals(1, dbQueries.get());
+
+        // The entry expires everywhere: the next wave of readers again triggers a single query.
+        cache.evict(42L);
+        assertEquals(List.of("user-42"), readConcurrently(cache, dbQueries));
+        assertEquals(2, dbQueries.get());
+    }
+
+    @Test
+    void loadRacingWithAnEvictionIsNotStored() {
+        ConcurrentMapCache redis = new ConcurrentMapCache("users");
+        TwoTierCache cache = new TwoTierCache("users", redis,
+                Caffeine.newBuilder().maximumSize(100).build(), key -> { }, null);
+
+        String loaded = cache.get(42L, () -> {
+            cache.evict(42L); // The user is written while the old row is being read.
+            return "stale-user-42";
+        });
+
+        assertEquals("stale-user-42", loaded);
+        assertNull(redis.get(42L));
+        assertNull(cache.get(42L));
+    }
+
+    @Test
+    void loadIsStoredWhenOtherKeysAreWritten() {
+        ConcurrentMapCache redis = new ConcurrentMapCache("users");
+        TwoTierCache cache = new TwoTierCache("users", redis,
+                Caffeine.newBuilder().maximumSize(100).build(), key -> { }, null);
+
+        cache.get(42L, () -> {
+            cache.put(43L, "user-43");
+            cache.evict(44L);
+            cache.evictLocal("45"); // Announced by another node.
+            return "user-42";
+        });
+
+        assertEquals("user-42", redis.get(42L).get());
+    }
+
+    @Test
+    void loadRacingWithAClearIsNotStored() {
+        ConcurrentMapCache redis = new ConcurrentMapCache("users");
+        TwoTierCache cache = new TwoTierCache("users", redis,
+                Caffeine.newBuilder().maximumSize(100).build(), key -> { }, null);
+
+        cache.get(42L, () -> {
+            cache.clear();
+            return "stale-user-42";
+        });
+
+        assertNull(redis.get(42L));
+    }
+
+    @Test
+    void valueStoredByAnotherCallerIsKeptInTheNearCache() {
+        ConcurrentMapCache redis = new ConcurrentMapCache("users") {
+            private boolean missed;
+
+            @Override
+            public ValueWrapper get(Object key) {
+                if (!missed) {
+                    missed = true; // The first lookup misses; the entry is stored before the load starts.
+                    put(key, "user-42");
+                    return null;
+                }
+                return super.get(key);
+            }
+        };
+        TwoTierCache cache = new TwoTierCache("users", redis,
+                Caffeine.newBuilder().maximumSize(100).build(), key -> { }, null);
+
+        assertEquals("user-42", cache.get(42L, () -> "loaded-user-42"));
+        assertEquals(1, cache.nearSize());
+        assertEquals("user-42", cache.get(42L).get());
+        assertEquals(1, cache.nearHits());
+    }
+
+    private static List<String> readConcurrently(TwoTierCache cache, AtomicInteger dbQueries) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get(42L, () -> {
+                        dbQueries.incrementAndGet();
+                        Thread.sleep(100); // Simulated query latency keeps the other readers waiting.
+                        return "user-42";
+                    });
+                }));
+            }
+            start.countDown();
+            List<String> values = new ArrayList<>();
+            for (Future<String> result : results) {
+                String value = result.get();
+                if (!values.contains(value)) {
+                    values.add(value);
+                }
+            }
+            return values;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mahmud.redispostgres.cache;
+
+import com.mahmud.redispostgres.model.UserPage;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class UserPageIndexTests {
+
+    @SuppressWarnings("unchecked")
+    private final ZSetOperations<String, String> zSet = mock(ZSetOperations.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final CacheManager cacheManager = mock(CacheManager.class);
+
+    @Test
+    void registersPagesOnLoadOnly() {
+        when(redisTemplate.opsForZSet()).thenReturn(zSet);
+        when(cacheManager.getCache(UserPageIndex.CACHE_NAME)).thenReturn(new ConcurrentMapCache(UserPageIndex.CACHE_NAME));
+        UserPageIndex index = new UserPageIndex(redisTemplate, cacheManager, Duration.ofMinutes(10));
+        UserPage page = new UserPage(List.of(), null);
+        AtomicInteger loads = new AtomicInteger();
+
+        index.getPage(0, 10, () -> {
+            loads.incrementAndGet();
+            return page;
+        });
+        verify(zSet, times(2)).add(anyString(), anyString(), anyDouble()); // Claim, then register.
+        verify(redisTemplate).expire(anyString(), any(Duration.class));
+
+        clearInvocations(redisTemplate, zSet);
+        assertSame(page, index.getPage(0, 10, () -> {
+            loads.incrementAndGet();
+            return page;
+        }));
+
+        assertEquals(1, loads.get());
+        verifyNoInteractions(redisTemplate, zSet);
+    }
+}
@@ -0,0 +1,67 @@
+package com.mahmud.redispostgres.service;
+
+import com.mahmud.redispostgres.model.Session;
+import com.mahmud.redispostgres.model.SessionPage;
+import com.mahmud.redispostgres.repository.SessionActivityIndex;
+import com.mahmud.redispostgres.repository.SessionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionServiceTests {
+
+    private final SessionRepository sessionRepository = mock(SessionRepository.class);
+    private final SessionActivityIndex activityIndex = mock(SessionActivityIndex.class);
+    private final SessionTouchBuffer touchBuffer = mock(SessionTouchBuffer.class);
+    private final SessionService sessionService = new SessionService(sessionRepository, activityIndex, touchBuffer);
+
+    @Test
+    void cursorDoesNotCountPrunedEntries() {
+        List<TypedTuple<String>> entries = List.of(entry("a", 1000), entry("b", 1000), entry("c", 1000));
+        when(activityIndex.activeSince(1000, 0, 3)).thenReturn(entries);
+        when(sessionRepository.findAllById(List.of("a", "b", "c"))).thenReturn(List.of(session("a"), session("c")));
+
+        SessionPage page = sessionService.getActiveSessions(null, "1000-0", 3);
+
+        verify(activityIndex).removeAll(List.of("b"));
+        assertEquals(2, page.sessions().size());
+        // "b" is gone from the index, so the entry after "c" is now at offset 2, not 3.
+        assertEquals("1000-2", page.nextCursor());
+    }
+
+    @Test
+    void evictionLeavesSessionsTouchedSinceTheRangeWasRead() {
+        LocalDateTime cutoff = LocalDateTime.of(2025, 1, 1, 0, 0);
+        long cutoffMillis = SessionActivityIndex.toMillis(cutoff);
+        when(activityIndex.idleBefore(cutoffMillis, 0, 3)).thenReturn(List.of("a", "b", "c"));
+        when(touchBuffer.pendingTouch("b")).thenReturn(LocalDateTime.now());
+        // "c" was touched by another node before the script ran.
+        when(activityIndex.evictIfIdle(List.of("a", "c"), cutoffMillis)).thenReturn(List.of("a"));
+
+        assertEquals(1, sessionService.evictIdleSessions(cutoff, 3, 2));
+
+        // Only "b" is still in the idle range ahead of the next batch.
+        verify(activityIndex).idleBefore(cutoffMillis, 1, 3);
+        verify(sessionRepository, never()).deleteById(anyString());
+    }
+
+    private static TypedTuple<String> entry(String id, long score) {
+        return new DefaultTypedTuple<>(id, (double) score);
+    }
+
+    private static Session session(String id) {
+        Session session = new Session();
+        session.setSessionId(id);
+        return session;
+    }
+}
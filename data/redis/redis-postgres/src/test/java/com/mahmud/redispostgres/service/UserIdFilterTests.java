@@ -0,0 +1,107 @@
+package com.mahmud.redispostgres.service;
+
+import com.mahmud.redispostgres.datasource.PrimaryPin;
+import com.mahmud.redispostgres.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserIdFilterTests {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private UserIdFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new UserIdFilter(userRepository, mock(PlatformTransactionManager.class),
+                mock(StringRedisTemplate.class), mock(RedisMessageListenerContainer.class), Runnable::run,
+                true, 0.001, 1_000, "user-ids");
+    }
+
+    @Test
+    void answersMaybeUntilBuilt() {
+        assertTrue(filter.mightExist(12345));
+    }
+
+    @Test
+    void rebuildsFromThePrimary() {
+        AtomicBoolean pinned = new AtomicBoolean();
+        when(userRepository.count()).thenReturn(100L);
+        when(userRepository.streamAllIds()).thenAnswer(invocation -> {
+            pinned.set(PrimaryPin.isPinned());
+            return LongStream.rangeClosed(1, 100).boxed();
+        });
+
+        filter.rebuild();
+
+        assertTrue(pinned.get());
+        assertFalse(PrimaryPin.isPinned());
+        assertTrue(LongStream.rangeClosed(1, 100).allMatch(filter::mightExist));
+        assertEquals(100, filter.getStats().maxKnownId());
+    }
+
+    @Test
+    void addsAnnouncedIds() {
+        buildWithIdsUpTo(100);
+        filter.added(200);
+        filter.onMessage(new DefaultMessage("user-ids".getBytes(StandardCharsets.UTF_8),
+                "150,151".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertTrue(filter.mightExist(150));
+        assertTrue(filter.mightExist(151));
+        assertTrue(filter.mightExist(200));
+        assertTrue(filter.mightExist(201)); // Above every known ID.
+    }
+
+    @Test
+    void confirmsMissesOnThePrimaryAndLearnsFromFalseOnes() {
+        buildWithIdsUpTo(100);
+        filter.added(200);
+        long unannounced = LongStream.rangeClosed(101, 199).filter(id -> !filter.mightExist(id)).findFirst().orElseThrow();
+
+        String user = filter.confirmMiss(unannounced, () -> PrimaryPin.isPinned() ? "user" : "replica-read");
+
+        assertEquals("user", user);
+        assertTrue(filter.mightExist(unannounced));
+        assertEquals(1, filter.getStats().falseMisses());
+        assertNull(filter.confirmMiss(unannounced + 1000, () -> null));
+        assertFalse(PrimaryPin.isPinned());
+    }
+
+    @Test
+    void answersMissesCoveredByTheRebuildWithoutAQuery() {
+        when(userRepository.count()).thenReturn(100L);
+        when(userRepository.streamAllIds()).thenAnswer(invocation -> LongStream.rangeClosed(1, 100).map(id -> id * 2).boxed());
+        filter.rebuild();
+        long missing = LongStream.rangeClosed(1, 199).filter(id -> id % 2 == 1 && !filter.mightExist(id)).findFirst().orElseThrow();
+
+        assertNull(filter.confirmMiss(missing, () -> userRepository.findById(missing).orElse(null)));
+
+        verify(userRepository, never()).findById(anyLong());
+        assertEquals(1, filter.getStats().definiteMisses());
+        assertEquals(0, filter.getStats().confirmedMisses());
+    }
+
+    private void buildWithIdsUpTo(long maxId) {
+        when(userRepository.count()).thenReturn(maxId);
+        when(userRepository.streamAllIds()).thenAnswer(invocation -> LongStream.rangeClosed(1, maxId).boxed());
+        filter.rebuild();
+    }
+}
@@ -0,0 +1,105 @@
+package com.mahmud.redispostgres.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mahmud.redispostgres.cache.UserPageIndex;
+import com.mahmud.redispostgres.model.User;
+import com.mahmud.redispostgres.model.UserImportError;
+import com.mahmud.redispostgres.model.UserImportResult;
+import com.mahmud.redispostgres.repository.UserBulkRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceTests {
+
+    private final UserBulkRepository userBulkRepository = mock(UserBulkRepository.class);
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    @Test
+    void nullAndUnmappableItemsAreReportedAndSkipped() throws IOException {
+        insertsWithNotNullName();
+
+        UserImportResult result = importUsers(10, """
+                [null,
+                 {"name": "A", "email": "a@example.com"},
+                 {"id": "one", "name": "B", "email": "b@example.com"},
+                 {"name": "C", "email": "c@example.com"}]
+                """);
+
+        assertEquals(2, result.imported());
+        assertEquals(List.of(0L, 2L), result.errors().stream().map(UserImportError::item).toList());
+        assertTrue(result.errors().stream().allMatch(error -> error.status() == 400));
+    }
+
+    @Test
+    void constraintViolationSkipsOnlyTheOffendingUser() throws IOException {
+        insertsWithNotNullName();
+
+        UserImportResult result = importUsers(10, """
+                {"name": "A", "email": "a@example.com"}
+                {"name": null, "email": "b@example.com"}
+                {"name": "C", "email": "c@example.com"}
+                """);
+
+        assertEquals(2, result.imported());
+        assertEquals(1, result.failed());
+        assertEquals(1L, result.errors().get(0).item());
+        assertEquals(400, result.errors().get(0).status());
+    }
+
+    @Test
+    void databaseFailureStopsTheImportAndKeepsTheCount() throws IOException {
+        when(userBulkRepository.insertBatch(anyList()))
+                .thenAnswer(invocation -> ids(invocation.getArgument(0)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        UserImportResult result = importUsers(2, """
+                {"name": "A", "email": "a@example.com"}
+                {"name": "B", "email": "b@example.com"}
+                {"name": "C", "email": "c@example.com"}
+                {"name": "D", "email": "d@example.com"}
+                {"name": "E", "email": "e@example.com"}
+                """);
+
+        assertEquals(2, result.imported());
+        assertEquals(2, result.batches());
+        assertEquals(1, result.failed());
+        assertNull(result.errors().get(0).item());
+        assertEquals(503, result.errors().get(0).status());
+    }
+
+    private void insertsWithNotNullName() {
+        when(userBulkRepository.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            if (users.stream().anyMatch(user -> user.getName() == null)) {
+                throw new DataIntegrityViolationException("null value in column \"name\"");
+            }
+            return ids(users);
+        });
+    }
+
+    private List<Long> ids(List<User> users) {
+        return LongStream.range(0, users.size()).map(i -> nextId.getAndIncrement()).boxed().toList();
+    }
+
+    private UserImportResult importUsers(int batchSize, String body) throws IOException {
+        UserImportService service = new UserImportService(userBulkRepository, mock(UserPageIndex.class),
+                mock(UserIdFilter.class), mock(CacheManager.class), new ObjectMapper(), batchSize);
+        return service.importUsers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}